@@ -0,0 +1,203 @@
+package me.theofrancisco.android.bookstore;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewTreeObserver;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.TestBooks;
+
+/**
+ * Time from starting {@link CatalogActivity} to the first frame that draws rows of the list,
+ * with the {@link CatalogSnapshot} of the last load and without it, when the first frame
+ * waits for the first page. Before every start the provider closes the database, so the
+ * first query opens it again as on a cold start; the process and the provider stay up, the
+ * time to start them is the same with or without the snapshot.
+ * <p>
+ * It draws real frames, so it runs on a device:
+ * ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=me.theofrancisco.android.bookstore.CatalogStartBenchmark
+ * The results are written to the external files of the app, in
+ * benchmark-results/CatalogStartBenchmark.json.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogStartBenchmark {
+
+    private static final int BOOKS = 1000;
+    private static final long TIMEOUT_SECONDS = 10;
+    //Names of the books added by this class, like "Xy Book 000123"
+    private static final String BENCHMARK_BOOKS =
+            DataEntry.COLUMN_DATA_NAME + " GLOB '?? Book [0-9][0-9][0-9][0-9][0-9][0-9]'";
+
+    private static final BenchmarkReport report = new BenchmarkReport(CatalogStartBenchmark.class,
+            InstrumentationRegistry.getTargetContext().getExternalFilesDir("benchmark-results"));
+
+    @BeforeClass
+    public static void addBooks() {
+        InstrumentationRegistry.getTargetContext().getContentResolver()
+                .bulkInsert(DataEntry.CONTENT_URI, TestBooks.books(0, BOOKS));
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        report.write();
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.getContentResolver().delete(DataEntry.CONTENT_URI, BENCHMARK_BOOKS, null);
+        //The snapshot shows the books of the benchmark, the next load writes a new one
+        CatalogSnapshot.delete(context);
+    }
+
+    @Test
+    public void withSnapshot() throws Exception {
+        measure("withSnapshot", new ColdStart(true));
+    }
+
+    @Test
+    public void withoutSnapshot() throws Exception {
+        measure("withoutSnapshot", new ColdStart(false));
+    }
+
+    private static void measure(String benchmark, ColdStart start) throws Exception {
+        try {
+            report.run(benchmark, start);
+        } finally {
+            start.finishActivity();
+        }
+    }
+
+    //Starts the catalog and waits for its first frame with rows, returns one start
+    private static class ColdStart extends BenchmarkReport.Iteration {
+        private final boolean snapshot;
+        private FirstListFrame started;
+
+        ColdStart(boolean snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            finishActivity();
+            Context context = InstrumentationRegistry.getTargetContext();
+            //With the snapshot, the file is the one written by the load of the previous
+            //start, the first warmup start writes it
+            if (!snapshot) {
+                CatalogSnapshot.delete(context);
+            }
+            ContentProviderClient client = context.getContentResolver()
+                    .acquireContentProviderClient(DataEntry.CONTENT_URI);
+            try {
+                client.getLocalContentProvider().shutdown();
+            } finally {
+                client.release();
+            }
+        }
+
+        @Override
+        public long run() throws Exception {
+            Context context = InstrumentationRegistry.getTargetContext();
+            started = new FirstListFrame();
+            ((Application) context.getApplicationContext()).registerActivityLifecycleCallbacks(started);
+            context.startActivity(new Intent(context, CatalogActivity.class)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+            if (!started.drawn.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new AssertionError("The catalog did not draw any row");
+            }
+            record("rows on the first frame", started.rows);
+            return 1;
+        }
+
+        //Finishes the activity of the last start and waits until it is destroyed
+        void finishActivity() throws InterruptedException {
+            if (started == null) {
+                return;
+            }
+            final FirstListFrame last = started;
+            started = null;
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    if (last.activity != null) {
+                        last.activity.finish();
+                    }
+                }
+            });
+            boolean destroyed = last.destroyed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            ((Application) InstrumentationRegistry.getTargetContext().getApplicationContext())
+                    .unregisterActivityLifecycleCallbacks(last);
+            if (!destroyed) {
+                throw new AssertionError("The catalog was not destroyed");
+            }
+        }
+    }
+
+    //Watches the next CatalogActivity, its list is laid out before every frame is drawn
+    private static class FirstListFrame implements Application.ActivityLifecycleCallbacks {
+        final CountDownLatch drawn = new CountDownLatch(1);
+        final CountDownLatch destroyed = new CountDownLatch(1);
+        volatile Activity activity;
+        volatile int rows;
+
+        @Override
+        public void onActivityStarted(Activity started) {
+            if (!(started instanceof CatalogActivity) || activity != null) {
+                return;
+            }
+            activity = started;
+            final RecyclerView list = started.findViewById(R.id.list);
+            list.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    if (list.getChildCount() > 0) {
+                        list.getViewTreeObserver().removeOnPreDrawListener(this);
+                        rows = list.getChildCount();
+                        drawn.countDown();
+                    }
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity destroyedActivity) {
+            if (destroyedActivity == activity) {
+                destroyed.countDown();
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
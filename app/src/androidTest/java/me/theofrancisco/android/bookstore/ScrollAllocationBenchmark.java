@@ -0,0 +1,185 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * Objects allocated while reading the names of a catalog of 100,000 books, row after row as
+ * a scroll does, through the cursor that {@link CatalogPageLoader} delivers. The
+ * "allocations/row" secondary metric is the one to compare: copyStringToBuffer() on a
+ * {@link PagedCursor} should stay close to zero, a plain MergeCursor allocates like
+ * getString(). bindRows runs onBindViewHolder() of {@link DataCursorAdapter} on every row.
+ * <p>
+ * The allocations are counted with Debug.getThreadAllocCount(), so it runs on a device:
+ * ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=me.theofrancisco.android.bookstore.ScrollAllocationBenchmark
+ * The results are written to the external files of the app, in
+ * benchmark-results/ScrollAllocationBenchmark.json.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollAllocationBenchmark {
+
+    private static final int ROWS = 100000;
+    //The loader pages have 50 rows, but every page keeps a CursorWindow and its file
+    //descriptor, 2,000 of them would run out of descriptors. The copy path is the same.
+    private static final int PAGE_ROWS = 1000;
+    private static final String DATABASE_NAME = "scroll-benchmark.db";
+
+    private static final BenchmarkReport report = new BenchmarkReport(ScrollAllocationBenchmark.class,
+            InstrumentationRegistry.getTargetContext().getExternalFilesDir("benchmark-results"));
+
+    private static SQLiteDatabase database;
+    private static Cursor[] pages;
+
+    @BeforeClass
+    public static void createBooks() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        File file = context.getDatabasePath(DATABASE_NAME);
+        database = SQLiteDatabase.openOrCreateDatabase(file, null);
+        database.execSQL("CREATE TABLE books (" + DataEntry._ID + " INTEGER PRIMARY KEY, "
+                + DataEntry.COLUMN_DATA_NAME + " TEXT NOT NULL, " + DataEntry.COLUMN_DATA_QUANTITY + " INTEGER NOT NULL)");
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                database.execSQL("INSERT INTO books VALUES (?, ?, ?)", new Object[]{i + 1,
+                        "Book number " + i, i % 50});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        pages = new Cursor[ROWS / PAGE_ROWS];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = database.rawQuery("SELECT * FROM books WHERE " + DataEntry._ID + " > ? ORDER BY "
+                    + DataEntry._ID + " LIMIT " + PAGE_ROWS, new String[]{String.valueOf(i * PAGE_ROWS)});
+            pages[i].getCount();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        report.write();
+        for (Cursor page : pages) {
+            page.close();
+        }
+        database.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void mergeCursorGetString() throws Exception {
+        report.run("mergeCursorGetString", new ReadNames(new MergeCursor(pages)) {
+            @Override
+            void read(Cursor cursor, int nameColumnIndex) {
+                cursor.getString(nameColumnIndex);
+            }
+        });
+    }
+
+    @Test
+    public void mergeCursorCopyStringToBuffer() throws Exception {
+        final CharArrayBuffer buffer = new CharArrayBuffer(64);
+        report.run("mergeCursorCopyStringToBuffer", new ReadNames(new MergeCursor(pages)) {
+            @Override
+            void read(Cursor cursor, int nameColumnIndex) {
+                cursor.copyStringToBuffer(nameColumnIndex, buffer);
+            }
+        });
+    }
+
+    @Test
+    public void pagedCursorCopyStringToBuffer() throws Exception {
+        final CharArrayBuffer buffer = new CharArrayBuffer(64);
+        report.run("pagedCursorCopyStringToBuffer", new ReadNames(new PagedCursor(pages)) {
+            @Override
+            void read(Cursor cursor, int nameColumnIndex) {
+                cursor.copyStringToBuffer(nameColumnIndex, buffer);
+            }
+        });
+    }
+
+    @Test
+    public void bindRows() throws Exception {
+        final DataCursorAdapter adapter = new DataCursorAdapter(new DataCursorAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClick(long id) {
+            }
+        });
+        final Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+        final DataCursorAdapter.ViewHolder[] holder = new DataCursorAdapter.ViewHolder[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter.showSnapshot(new PagedCursor(pages));
+                holder[0] = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+            }
+        });
+        report.run("bindRows", new BenchmarkReport.Iteration() {
+            @Override
+            public long run() {
+                final long[] allocations = new long[1];
+                //Views are only touched on the main thread
+                InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        Debug.startAllocCounting();
+                        Debug.resetThreadAllocCount();
+                        for (int position = 0; position < ROWS; position++) {
+                            adapter.onBindViewHolder(holder[0], position);
+                        }
+                        allocations[0] = Debug.getThreadAllocCount();
+                        Debug.stopAllocCounting();
+                    }
+                });
+                record("allocations/row", allocations[0] / (double) ROWS);
+                return ROWS;
+            }
+        });
+    }
+
+    //Reads the name of every row of the cursor and counts the objects allocated meanwhile
+    private abstract static class ReadNames extends BenchmarkReport.Iteration {
+        private final Cursor cursor;
+        private final int nameColumnIndex;
+
+        ReadNames(Cursor cursor) {
+            this.cursor = cursor;
+            nameColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+        }
+
+        abstract void read(Cursor cursor, int nameColumnIndex);
+
+        @Override
+        public long run() {
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int position = 0; position < ROWS; position++) {
+                cursor.moveToPosition(position);
+                read(cursor, nameColumnIndex);
+            }
+            long allocations = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+            record("allocations/row", allocations / (double) ROWS);
+            return ROWS;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
+
+/**
+ * Latency of the first page of the catalog list while another thread keeps writing books,
+ * for every WAL checkpoint mode of {@link MyDbHelper}, and with no writer as the reference.
+ * With write-ahead logging a reader does not wait for the writer, so the read times under
+ * load should stay close to the idle ones; the mode shows up in the size of the log.
+ * <p>
+ * Runs on a device, the JVM SQLite of Robolectric runs every statement on one thread:
+ * ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=me.theofrancisco.android.bookstore.data.CheckpointBenchmark
+ * The results are written to the external files of the app,
+ * Android/data/me.theofrancisco.android.bookstore/files/benchmark-results/CheckpointBenchmark.json,
+ * pull them with adb pull.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CheckpointBenchmark {
+
+    //A file of its own, the catalog of the app is not touched
+    private static final String DATABASE_NAME = "checkpoint-benchmark.db";
+    private static final int TABLE_ROWS = 5000;
+    //Reads measured by every iteration
+    private static final int READS = 200;
+    //Rows of every write transaction of the writer
+    private static final int WRITE_BATCH_ROWS = 100;
+    private static final String FIRST_PAGE_SQL = "SELECT " + DataEntry._ID + ", " + DataEntry.COLUMN_DATA_NAME
+            + ", " + DataEntry.COLUMN_DATA_QUANTITY + " FROM " + DataEntry.TABLE_NAME
+            + " ORDER BY " + DataEntry.SORT_BY_NAME + ", " + DataEntry._ID + " LIMIT 50";
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+
+    private static final BenchmarkReport report = new BenchmarkReport(CheckpointBenchmark.class,
+            InstrumentationRegistry.getTargetContext().getExternalFilesDir("benchmark-results"));
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+    private MyDbHelper helper;
+    private long supplierId;
+    private int nextBook;
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            helper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void idle() throws Exception {
+        run("idle", MyDbHelper.CHECKPOINT_AUTOMATIC, false);
+    }
+
+    @Test
+    public void automatic() throws Exception {
+        run("automatic", MyDbHelper.CHECKPOINT_AUTOMATIC, true);
+    }
+
+    @Test
+    public void periodic() throws Exception {
+        run("periodic", MyDbHelper.CHECKPOINT_PERIODIC, true);
+    }
+
+    @Test
+    public void manual() throws Exception {
+        run("manual", MyDbHelper.CHECKPOINT_MANUAL, true);
+    }
+
+    private void run(String benchmark, int checkpointMode, final boolean withWriter) throws Exception {
+        context.deleteDatabase(DATABASE_NAME);
+        helper = new MyDbHelper(context, DATABASE_NAME, checkpointMode);
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_NAME, "Supplier");
+        supplier.put(SupplierEntry.COLUMN_PHONE, "555-0100");
+        supplierId = helper.getWritableDatabase().insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+        writeBooks(TABLE_ROWS);
+
+        report.run(benchmark, WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, new BenchmarkReport.Iteration() {
+            @Override
+            public long run() throws Exception {
+                Writer writer = withWriter ? new Writer() : null;
+                if (writer != null) {
+                    writer.start();
+                }
+                long[] nanos = new long[READS];
+                SQLiteDatabase database = helper.getReadableDatabase();
+                for (int i = 0; i < READS; i++) {
+                    long start = System.nanoTime();
+                    Cursor cursor = database.rawQuery(FIRST_PAGE_SQL, null);
+                    try {
+                        cursor.getCount();
+                    } finally {
+                        cursor.close();
+                    }
+                    nanos[i] = System.nanoTime() - start;
+                }
+                if (writer != null) {
+                    record("writer rows", writer.finish());
+                }
+                Arrays.sort(nanos);
+                record("read p50 ms", nanos[READS / 2] / 1e6);
+                record("read p99 ms", nanos[READS * 99 / 100] / 1e6);
+                record("read max ms", nanos[READS - 1] / 1e6);
+                record("wal KB", context.getDatabasePath(DATABASE_NAME + "-wal").length() / 1024.0);
+                return READS;
+            }
+        });
+    }
+
+    //Inserts count books in one transaction, then lets the helper checkpoint like the provider
+    private void writeBooks(int count) {
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                ContentValues values = TestBooks.book(nextBook++);
+                values.remove(DataEntry.COLUMN_DATA_SUPPLIER);
+                values.remove(DataEntry.COLUMN_DATA_SUPPLIER_PH);
+                values.put(DataEntry.COLUMN_DATA_SUPPLIER_ID, supplierId);
+                database.insertOrThrow(DataEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        helper.checkpointIfManual();
+    }
+
+    //Writes batches of books until finish()
+    private class Writer extends Thread {
+        private volatile boolean stopped;
+        private int rows;
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                writeBooks(WRITE_BATCH_ROWS);
+                rows += WRITE_BATCH_ROWS;
+            }
+        }
+
+        int finish() throws InterruptedException {
+            stopped = true;
+            join();
+            return rows;
+        }
+    }
+}
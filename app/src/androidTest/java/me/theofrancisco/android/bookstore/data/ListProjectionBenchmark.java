@@ -0,0 +1,129 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.AbstractWindowedCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
+
+/**
+ * Loads the whole catalog sorted by name, as the list did before it was paged, with the
+ * {@link DataEntry#LIST_SUMMARY_PROJECTION} served by the covering index and with every
+ * column of the editor, which joins the suppliers. The secondary metrics count the
+ * CursorWindow fills of a full scan and the time of getCount(), which fills the first window.
+ * <p>
+ * The window size is the one of the device, so it runs there:
+ * ./gradlew :app:connectedDebugAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=me.theofrancisco.android.bookstore.data.ListProjectionBenchmark
+ * The results are written to the external files of the app, in
+ * benchmark-results/ListProjectionBenchmark.json.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListProjectionBenchmark {
+
+    private static final String DATABASE_NAME = "projection-benchmark.db";
+    private static final int BOOKS = 20000;
+
+    private static final String[] FULL_PROJECTION = {
+            DataEntry._ID,
+            DataEntry.COLUMN_DATA_NAME,
+            DataEntry.COLUMN_DATA_PRICE,
+            DataEntry.COLUMN_DATA_QUANTITY,
+            DataEntry.COLUMN_DATA_SUPPLIER,
+            DataEntry.COLUMN_DATA_SUPPLIER_PH};
+
+    private static final BenchmarkReport report = new BenchmarkReport(ListProjectionBenchmark.class,
+            InstrumentationRegistry.getTargetContext().getExternalFilesDir("benchmark-results"));
+
+    private static MyDbHelper helper;
+
+    @BeforeClass
+    public static void createBooks() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        helper = new MyDbHelper(context, DATABASE_NAME, MyDbHelper.CHECKPOINT_AUTOMATIC);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            long[] supplierIds = new long[TestBooks.SUPPLIER_COUNT];
+            for (int i = 0; i < supplierIds.length; i++) {
+                ContentValues book = TestBooks.book(i);
+                ContentValues supplier = new ContentValues();
+                supplier.put(SupplierEntry.COLUMN_NAME, book.getAsString(DataEntry.COLUMN_DATA_SUPPLIER));
+                supplier.put(SupplierEntry.COLUMN_PHONE, book.getAsString(DataEntry.COLUMN_DATA_SUPPLIER_PH));
+                supplierIds[i] = database.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+            }
+            for (int i = 0; i < BOOKS; i++) {
+                ContentValues values = TestBooks.book(i);
+                values.remove(DataEntry.COLUMN_DATA_SUPPLIER);
+                values.remove(DataEntry.COLUMN_DATA_SUPPLIER_PH);
+                values.put(DataEntry.COLUMN_DATA_SUPPLIER_ID, supplierIds[i % supplierIds.length]);
+                database.insertOrThrow(DataEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        report.write();
+        helper.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void listSummaryProjection() throws Exception {
+        report.run("listSummaryProjection", new LoadCatalog(DataEntry.LIST_SUMMARY_PROJECTION));
+    }
+
+    @Test
+    public void fullProjection() throws Exception {
+        report.run("fullProjection", new LoadCatalog(FULL_PROJECTION));
+    }
+
+    //Runs the query of the provider for the whole catalog and reads every row
+    private static class LoadCatalog extends BenchmarkReport.Iteration {
+        private final MyProvider.BooksQuery query;
+
+        LoadCatalog(String[] projection) {
+            query = new MyProvider.BooksQuery(DataEntry.CONTENT_URI, projection, null, null, DataEntry.SORT_BY_NAME);
+        }
+
+        @Override
+        public long run() {
+            long start = System.nanoTime();
+            AbstractWindowedCursor cursor = (AbstractWindowedCursor) helper.getReadableDatabase()
+                    .rawQuery(query.sql, query.args);
+            try {
+                int count = cursor.getCount();
+                record("getCount ms", (System.nanoTime() - start) / 1e6);
+                int fills = 1;
+                int windowStart = cursor.getWindow().getStartPosition();
+                while (cursor.moveToNext()) {
+                    cursor.getString(1);
+                    if (cursor.getWindow().getStartPosition() != windowStart) {
+                        windowStart = cursor.getWindow().getStartPosition();
+                        fills++;
+                    }
+                }
+                record("window fills", fills);
+                record("rows/window", count / (double) fills);
+                return 1;
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+}
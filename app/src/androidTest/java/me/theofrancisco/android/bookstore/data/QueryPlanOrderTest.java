@@ -0,0 +1,77 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry.BookFilter;
+
+import static me.theofrancisco.android.bookstore.data.QueryPlans.assertOrderedBy;
+
+/**
+ * The sorted lists read their order from an index, only the rows with the same key are sorted
+ * (the "RIGHT PART" of the ORDER BY). That plan came with SQLite 3.8.3, the JVM tests run 3.7,
+ * so these checks run on a device: Android 6.0, the minSdk, ships 3.8.10.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanOrderTest {
+
+    private static final String DATABASE_NAME = "query-plan-test.db";
+
+    private MyDbHelper dbHelper;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new MyDbHelper(context, DATABASE_NAME, MyDbHelper.CHECKPOINT_AUTOMATIC);
+        database = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void list_readsTheNameOrderFromTheNocaseNameIndex() {
+        assertOrderedBy("books_name_quantity_idx", planOf(DataEntry.buildPageUri(null, 0, 50)));
+        assertOrderedBy("books_name_quantity_idx", planOf(new BookFilter().sortBy(DataEntry.SORT_NAME).buildUri()));
+    }
+
+    @Test
+    public void sortedFilters_readTheOrderFromTheIndex() {
+        assertOrderedBy("books_supplier_price_idx",
+                planOf(new BookFilter().supplier(3).sortBy(DataEntry.SORT_PRICE).buildUri()));
+        assertOrderedBy("books_supplier_price_idx",
+                planOf(new BookFilter().supplier(3).inStock().sortBy(DataEntry.SORT_PRICE_DESCENDING).buildUri()));
+        assertOrderedBy("books_supplier_price_idx",
+                planOf(new BookFilter().supplier(3).priceRange(5, 20).sortBy(DataEntry.SORT_PRICE).buildUri()));
+        assertOrderedBy("books_price_quantity_idx",
+                planOf(new BookFilter().minPrice(5).sortBy(DataEntry.SORT_PRICE).buildUri()));
+        assertOrderedBy("books_price_quantity_idx",
+                planOf(new BookFilter().sortBy(DataEntry.SORT_PRICE).buildUri()));
+        assertOrderedBy("books_price_quantity_idx",
+                planOf(new BookFilter().sortBy(DataEntry.SORT_PRICE_DESCENDING).buildUri()));
+        assertOrderedBy("books_price_quantity_idx",
+                planOf(new BookFilter().inStock().sortBy(DataEntry.SORT_PRICE).buildUri()));
+        assertOrderedBy("books_name_quantity_idx",
+                planOf(new BookFilter().sortBy(DataEntry.SORT_NAME).buildUri()));
+        assertOrderedBy("books_name_quantity_idx",
+                planOf(new BookFilter().inStock().sortBy(DataEntry.SORT_NAME).buildUri()));
+    }
+
+    private String planOf(Uri uri) {
+        return QueryPlans.planOf(database, uri);
+    }
+}
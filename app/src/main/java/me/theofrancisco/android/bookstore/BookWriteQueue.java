@@ -0,0 +1,213 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
+
+/**
+ * Writes the books off the main thread, one at a time and in the order they were made.
+ * Queued updates of the same book are merged into one write.
+ */
+class BookWriteQueue {
+
+    /**
+     * Told on the main thread when a write is done.
+     */
+    interface Callback {
+        /**
+         * @param uri    the URI of the book, null when an insert failed
+         * @param result {@link #RESULT_OK}, {@link #RESULT_FAILED} or
+         *               {@link #RESULT_QUANTITY_NOT_SAVED}
+         */
+        void onWriteFinished(Uri uri, int result);
+    }
+
+    //The write was done
+    static final int RESULT_OK = 0;
+    //Nothing was written
+    static final int RESULT_FAILED = 1;
+    //An update wrote its other columns but not the quantity: the stock changed since the
+    //editor loaded it, or it would have gone below zero
+    static final int RESULT_QUANTITY_NOT_SAVED = 2;
+
+    private static BookWriteQueue instance;
+
+    private final ContentResolver contentResolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //Updates waiting in the queue, by book URI. An update leaves the map when it starts running,
+    //edits made after that are a new write.
+    private final Map<Uri, PendingUpdate> pendingUpdates = new HashMap<>();
+
+    static synchronized BookWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new BookWriteQueue(context.getApplicationContext().getContentResolver());
+        }
+        return instance;
+    }
+
+    //Package-private for the tests, the app uses getInstance()
+    BookWriteQueue(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Queues the insert of a new book.
+     *
+     * @param callback told about the result, can be null
+     */
+    void insert(final ContentValues values, final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri uri = null;
+                try {
+                    uri = contentResolver.insert(DataEntry.CONTENT_URI, values);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to insert a book", e);
+                }
+                postResult(callback, uri, uri != null ? RESULT_OK : RESULT_FAILED);
+            }
+        });
+    }
+
+    /**
+     * Queues an update of the book at itemUri: values are written with update() and the
+     * quantity is changed from loadedQuantity to quantity with a compare-and-set
+     * {@link DataEntry#METHOD_ADJUST_STOCK}, so a sale or another editor's save made since the
+     * load is never overwritten; the callback gets {@link #RESULT_QUANTITY_NOT_SAVED} instead.
+     * If an update of the same book is still waiting, this one is merged into it.
+     *
+     * @param loadedQuantity quantity of the book when the editor loaded it
+     * @param quantity       quantity the user typed
+     * @param callback       told about the result, can be null
+     */
+    void update(Uri itemUri, ContentValues values, int loadedQuantity, int quantity, Callback callback) {
+        synchronized (pendingUpdates) {
+            PendingUpdate pending = pendingUpdates.get(itemUri);
+            //A quantity change continues the waiting one only if it starts where that one ends
+            if (pending != null && (quantity == loadedQuantity || !pending.changesQuantity()
+                    || pending.quantity == loadedQuantity)) {
+                pending.values.putAll(values);
+                if (quantity != loadedQuantity) {
+                    if (!pending.changesQuantity()) {
+                        pending.loadedQuantity = loadedQuantity;
+                    }
+                    pending.quantity = quantity;
+                }
+                pending.callbacks.add(callback);
+                return;
+            }
+            pending = new PendingUpdate(itemUri, new ContentValues(values), loadedQuantity, quantity);
+            pending.callbacks.add(callback);
+            pendingUpdates.put(itemUri, pending);
+            executor.execute(pending);
+        }
+    }
+
+    /**
+     * Queues the delete of every book. The provider deletes them in chunks and notifies the
+     * change once at the end.
+     *
+     * @param callback told about the result with the books URI, can be null
+     */
+    void deleteAll(final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int result;
+                try {
+                    contentResolver.delete(DataEntry.CONTENT_URI, null, null);
+                    result = RESULT_OK;
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to delete the books", e);
+                    result = RESULT_FAILED;
+                }
+                postResult(callback, DataEntry.CONTENT_URI, result);
+            }
+        });
+    }
+
+    private void postResult(final Callback callback, final Uri uri, final int result) {
+        if (callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onWriteFinished(uri, result);
+            }
+        });
+    }
+
+    private class PendingUpdate implements Runnable {
+        final Uri itemUri;
+        final ContentValues values;
+        //The quantity goes from loadedQuantity to quantity, no change when they are equal
+        int loadedQuantity;
+        int quantity;
+        final List<Callback> callbacks = new ArrayList<>();
+
+        PendingUpdate(Uri itemUri, ContentValues values, int loadedQuantity, int quantity) {
+            this.itemUri = itemUri;
+            this.values = values;
+            this.loadedQuantity = loadedQuantity;
+            this.quantity = quantity;
+        }
+
+        boolean changesQuantity() {
+            return quantity != loadedQuantity;
+        }
+
+        @Override
+        public void run() {
+            synchronized (pendingUpdates) {
+                if (pendingUpdates.get(itemUri) == this) {
+                    pendingUpdates.remove(itemUri);
+                }
+            }
+            int result = RESULT_FAILED;
+            try {
+                if (values.size() == 0 || contentResolver.update(itemUri, values, null, null) > 0) {
+                    //From here on the other columns are written, a quantity failure is partial
+                    result = RESULT_QUANTITY_NOT_SAVED;
+                    if (!changesQuantity() || adjustStock()) {
+                        result = RESULT_OK;
+                    }
+                }
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to update " + itemUri, e);
+            }
+            for (Callback callback : callbacks) {
+                postResult(callback, itemUri, result);
+            }
+        }
+
+        //False if the quantity is no longer the loaded one or would go below zero
+        private boolean adjustStock() {
+            Bundle extras = DataEntry.buildAdjustStockExtras(new long[]{ContentUris.parseId(itemUri)},
+                    new int[]{quantity - loadedQuantity}, new int[]{loadedQuantity});
+            Bundle result = contentResolver.call(DataEntry.CONTENT_URI, DataEntry.METHOD_ADJUST_STOCK,
+                    null, extras);
+            return result != null && result.getBooleanArray(DataEntry.EXTRA_ADJUSTED)[0];
+        }
+    }
+}
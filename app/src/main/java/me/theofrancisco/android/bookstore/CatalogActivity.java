@@ -1,22 +1,28 @@
 package me.theofrancisco.android.bookstore;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.StrictMode;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.Toast;
 
 import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
 
@@ -27,11 +33,38 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
 
     //Constant that will identified my loader. Could be any value.
     private static final int DATA_LOADER = 1900;
+    //Time the search text has to stay the same before the list is filtered with it
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
     private DataCursorAdapter adapter;
+    private View emptyView;
+
+    private final Handler searchHandler = new Handler();
+    private String searchText;
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Loader<Cursor> loader = getLoaderManager().getLoader(DATA_LOADER);
+            if (loader != null) {
+                ((CatalogPageLoader) loader).setNamePrefix(searchText);
+            }
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        //Debug builds log any disk access on the main thread, the provider runs in this process
+        //so a write that skipped BookWriteQueue shows up here, as a disk write and as the
+        //slow call noted by the provider
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectCustomSlowCalls()
+                    .penaltyLog()
+                    .build());
+        }
         setContentView(R.layout.activity_catalog);
 
 
@@ -45,23 +78,19 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             }
         });
 
-        //Find the ListView which will populated with the data
-        ListView listView = findViewById(R.id.list);
-
-        //Find and ser empty view on the ListView, so that it only shows when the
-        //list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        listView.setEmptyView(emptyView);
+        //Find the RecyclerView which will populated with the data
+        RecyclerView recyclerView = findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
 
-        //Setup an Adapter to create a list for each row of pet data in the cursor
-        //There is no data yet (until the loader finished) so pass in null for the cursor
-        adapter = new DataCursorAdapter(this, null);
-        listView.setAdapter(adapter);
+        //Find the empty view, so that it only shows when the list has 0 items.
+        emptyView = findViewById(R.id.empty_view);
 
-        //Setup item click listener
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        //Setup an Adapter to create a list for each row of data in the cursor
+        //There is no data yet (until the loader finished), the adapter starts empty
+        adapter = new DataCursorAdapter(new DataCursorAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            public void onItemClick(long id) {
                 Log.i("MyApp", "[CatalogActivity.onItemClick] started.");
                 Log.i("MyApp", "position id: " + id);
                 //Create a new intent to go to {@link EditorActivity}
@@ -82,15 +111,68 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
                 startActivity(intent);
             }
         });
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        recyclerView.setAdapter(adapter);
+
+        //Ask the loader for the next page when the user gets close to the end of the list
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = adapter.getItemCount();
+                if (totalItemCount > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= totalItemCount - CatalogPageLoader.PAGE_SIZE / 2) {
+                    Loader<Cursor> loader = getLoaderManager().getLoader(DATA_LOADER);
+                    if (loader != null) {
+                        ((CatalogPageLoader) loader).loadNextPage();
+                    }
+                }
+            }
+        });
+        //On a cold start show the rows saved by the last run until the first page is loaded.
+        //After a configuration change the loader still has its cursor, no need for them
+        if (savedInstanceState == null) {
+            StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskReads();
+            try {
+                adapter.showSnapshot(CatalogSnapshot.read(this));
+            } finally {
+                StrictMode.setThreadPolicy(policy);
+            }
+        }
         //Kick off the loader
         getLoaderManager().initLoader(DATA_LOADER, null, this);
     }
 
+    //Shows the empty view only when the list has 0 items
+    private void updateEmptyView() {
+        emptyView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
     @Override
     protected void onStart() {
         super.onStart();
     }
 
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        super.onDestroy();
+    }
+
     /**
      * Helper method to insert hardcoded pet data into the database. For debugging purposes only.
      */
@@ -104,7 +186,7 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Use the {@link DataEntry#CONTENT_URI} to indicate that we want to insert
         // into the database table.
         // Receive the new content URI that will allow us to access Toto's data in the future.
-        getContentResolver().insert(DataEntry.CONTENT_URI, values);
+        BookWriteQueue.getInstance(this).insert(values, null);
 
         values = new ContentValues();
         values.put(DataEntry.COLUMN_DATA_NAME, "Everything Men Know About Women");
@@ -112,7 +194,39 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         values.put(DataEntry.COLUMN_DATA_QUANTITY, 22);
         values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Ricky Martin");
         values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "9512623062");
-        getContentResolver().insert(DataEntry.CONTENT_URI, values);
+        BookWriteQueue.getInstance(this).insert(values, null);
+    }
+
+    //Asks before deleting every book, the delete itself runs on the BookWriteQueue thread
+    private void showDeleteAllConfirmationDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setMessage(R.string.delete_all_dialog_msg);
+        builder.setPositiveButton(R.string.action_delete, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                deleteAllBooks();
+            }
+        });
+        builder.setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                if (dialog != null) {
+                    dialog.dismiss();
+                }
+            }
+        });
+        builder.create().show();
+    }
+
+    private void deleteAllBooks() {
+        final Context appContext = getApplicationContext();
+        BookWriteQueue.getInstance(this).deleteAll(new BookWriteQueue.Callback() {
+            @Override
+            public void onWriteFinished(Uri uri, int result) {
+                //The list follows the change notification, only a failure is reported
+                if (result != BookWriteQueue.RESULT_OK) {
+                    Toast.makeText(appContext, R.string.catalog_delete_all_failed, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     @Override
@@ -120,6 +234,35 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        //Filter the list by the start of the name while the user types. Every keystroke
+        //restarts the debounce, and a new prefix cancels the query of the previous one
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchText = query.trim();
+                searchRunnable.run();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchText = newText.trim();
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+                return true;
+            }
+        });
+        //After a configuration change the loader is still filtered, show its prefix again
+        Loader<Cursor> loader = getLoaderManager().getLoader(DATA_LOADER);
+        String namePrefix = loader == null ? null : ((CatalogPageLoader) loader).getNamePrefix();
+        if (namePrefix != null) {
+            searchItem.expandActionView();
+            searchView.setQuery(namePrefix, false);
+        }
         return true;
     }
 
@@ -133,7 +276,7 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
                 return true;
             // Respond to a click on the "Delete all entries" menu option
             case R.id.action_delete_all_entries:
-                // Do nothing for now
+                showDeleteAllConfirmationDialog();
                 return true;
         }
         return super.onOptionsItemSelected(item);
@@ -142,20 +285,10 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
     //----------LoadManager.LoaderCallbacks<Cursor> methods implementation---------
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        //Projection. specifies the columns from the table we care about
-        String[] projection = {
-                DataEntry._ID,
-                DataEntry.COLUMN_DATA_NAME,
-                DataEntry.COLUMN_DATA_PRICE,
-                DataEntry.COLUMN_DATA_QUANTITY,
-                DataEntry.COLUMN_DATA_SUPPLIER,
-                DataEntry.COLUMN_DATA_SUPPLIER_PH};
-        return new CursorLoader(this,    //Parent activity context
-                DataEntry.CONTENT_URI,          //Provider content URI to query
-                projection,                     //Columns to include in the resulting cursor
-                null,                   //No selection clause
-                null,                //No selection arguments
-                null);                  //Default sort order
+        //Projection. Only the columns the list shows, served by the covering index
+        String[] projection = DataEntry.LIST_SUMMARY_PROJECTION;
+        //The catalog is read one keyset page at a time, sorted by name
+        return new CatalogPageLoader(this, projection);
 
     }
 
@@ -0,0 +1,219 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * Loads the catalog one keyset page at a time instead of the whole books table.
+ * The first load only reads {@link #PAGE_SIZE} rows, {@link #loadNextPage()} adds one more
+ * page, and the delivered cursor is a {@link PagedCursor} of the pages loaded so far.
+ * Like {@link android.content.CursorLoader} it reloads when the provider notifies a change,
+ * reading again only the pages the user has already scrolled through.
+ * Every load of the whole catalog saves the start of the first page as the {@link CatalogSnapshot}.
+ * <p>
+ * The list can be narrowed to the names starting with a prefix, see {@link #setNamePrefix}.
+ * A load that is superseded, by a new prefix or a change, cancels its running query in SQLite.
+ * <p>
+ * Unlike CursorLoader a delivered cursor is not closed when the next one is delivered:
+ * {@link DataCursorAdapter} keeps showing it until its diff is ready, and closes it then.
+ */
+public class CatalogPageLoader extends AsyncTaskLoader<Cursor> {
+
+    //Number of rows asked to the provider for every page
+    static final int PAGE_SIZE = 50;
+
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private final String[] projection;
+
+    //Pages wanted by the UI, and pages loaded by the last load
+    private volatile int pageCount = 1;
+    private volatile int loadedPageCount = 0;
+    private volatile boolean hasMorePages = true;
+
+    private volatile String namePrefix;
+    //Signal of the query running in loadInBackground(), guarded by this
+    private CancellationSignal cancellationSignal;
+
+    private Cursor cursor;
+    //Whether cursor reached the adapter, which then closes it
+    private boolean cursorDelivered;
+
+    /**
+     * @param projection columns of the catalog, it must contain _id and name
+     *                   because they are the keys of the next page.
+     */
+    CatalogPageLoader(Context context, String[] projection) {
+        super(context);
+        this.projection = projection;
+    }
+
+    /**
+     * Asks for one more page, unless the end of the table was reached or a page is
+     * already being loaded.
+     */
+    void loadNextPage() {
+        if (hasMorePages && loadedPageCount == pageCount) {
+            pageCount++;
+            forceLoad();
+        }
+    }
+
+    /**
+     * Shows only the books whose name starts with prefix, or all of them for a null or empty
+     * prefix. The list goes back to its first page, and the load in progress is canceled.
+     */
+    void setNamePrefix(String prefix) {
+        if (prefix != null && prefix.isEmpty()) {
+            prefix = null;
+        }
+        if (prefix == null ? namePrefix == null : prefix.equals(namePrefix)) {
+            return;
+        }
+        namePrefix = prefix;
+        pageCount = 1;
+        hasMorePages = true;
+        //forceLoad() cancels the running load first, see cancelLoadInBackground()
+        onContentChanged();
+    }
+
+    /**
+     * The prefix given to {@link #setNamePrefix}, null when the list is not filtered.
+     */
+    String getNamePrefix() {
+        return namePrefix;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            cancellationSignal = new CancellationSignal();
+        }
+        int pagesToLoad = pageCount;
+        String prefix = namePrefix;
+        List<Cursor> pages = new ArrayList<>(pagesToLoad);
+        String afterName = null;
+        long afterId = 0;
+        boolean more = true;
+        try {
+            for (int page = 0; page < pagesToLoad && more; page++) {
+                Uri uri = DataEntry.buildPageUri(prefix, afterName, afterId, PAGE_SIZE);
+                Cursor pageCursor = getContext().getContentResolver().query(uri, projection, null, null, null,
+                        cancellationSignal);
+                if (pageCursor == null) {
+                    break;
+                }
+                pages.add(pageCursor);
+                // Ensure the cursor window is filled.
+                int count = pageCursor.getCount();
+                more = count == PAGE_SIZE;
+                if (more && pageCursor.moveToLast()) {
+                    afterName = pageCursor.getString(pageCursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME));
+                    afterId = pageCursor.getLong(pageCursor.getColumnIndexOrThrow(DataEntry._ID));
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Cursor page : pages) {
+                page.close();
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                cancellationSignal = null;
+            }
+        }
+        if (prefix == null && !pages.isEmpty()) {
+            //Next cold start shows these rows while the database opens
+            CatalogSnapshot.write(getContext(), pages.get(0));
+        }
+        Cursor result = new PagedCursor(pages.toArray(new Cursor[pages.size()]));
+        result.registerContentObserver(observer);
+        hasMorePages = more;
+        loadedPageCount = pagesToLoad;
+        return result;
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (cancellationSignal != null) {
+                cancellationSignal.cancel();
+            }
+        }
+    }
+
+    /* Runs on the UI thread */
+    @Override
+    public void deliverResult(Cursor data) {
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            if (data != null) {
+                data.close();
+            }
+            return;
+        }
+        Cursor oldCursor = cursor;
+        boolean oldCursorDelivered = cursorDelivered;
+        cursor = data;
+        cursorDelivered = isStarted();
+
+        if (isStarted()) {
+            super.deliverResult(data);
+        }
+
+        //A load finished while the loader was stopped, no adapter will close it
+        if (oldCursor != null && oldCursor != data && !oldCursorDelivered && !oldCursor.isClosed()) {
+            oldCursor.close();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (cursor != null) {
+            deliverResult(cursor);
+        }
+        if (takeContentChanged() || cursor == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible.
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(Cursor data) {
+        if (data != null && !data.isClosed()) {
+            data.close();
+        }
+        //The canceled load did not deliver its pages, let the UI ask again
+        loadedPageCount = pageCount;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        if (cursor != null && !cursor.isClosed()) {
+            cursor.close();
+        }
+        cursor = null;
+        cursorDelivered = false;
+    }
+}
@@ -0,0 +1,162 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
+
+/**
+ * Copy of the first rows of the catalog kept in a small file, so a cold start can show the
+ * list before the provider has opened the database.
+ * <p>
+ * The file holds a header (magic and row count) and for every row its _id, quantity and
+ * UTF-8 name. It is rewritten with {@link AtomicFile} after a load whose rows changed, and
+ * read back through a memory map into a {@link MatrixCursor} with the columns of
+ * {@link DataEntry#LIST_SUMMARY_PROJECTION}.
+ */
+final class CatalogSnapshot {
+
+    //Rows kept, enough to fill the first screen of the list
+    static final int ROW_COUNT = 30;
+
+    private static final String FILE_NAME = "catalog_snapshot.bin";
+    //"BKS1", changes when the layout of the file changes
+    private static final int MAGIC = 0x424b5331;
+
+    //Last bytes written by this process, a load that did not change the rows is not written
+    private static byte[] lastWritten;
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Returns the rows of the last snapshot, or null if there is none or it can not be read.
+     * The file is a few KB, reading it is cheap enough for the main thread.
+     */
+    static Cursor read(Context context) {
+        FileInputStream in;
+        try {
+            //openRead() also brings back the previous file if a write was interrupted
+            in = new AtomicFile(new File(context.getFilesDir(), FILE_NAME)).openRead();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0) {
+                return null;
+            }
+            MatrixCursor cursor = new MatrixCursor(DataEntry.LIST_SUMMARY_PROJECTION, count);
+            byte[] name = new byte[64];
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                int quantity = buffer.getInt();
+                int length = buffer.getInt();
+                if (length < 0) {
+                    return null;
+                }
+                if (length > name.length) {
+                    name = new byte[length];
+                }
+                buffer.get(name, 0, length);
+                cursor.addRow(new Object[]{id, new String(name, 0, length, StandardCharsets.UTF_8), quantity});
+            }
+            return cursor;
+        } catch (IOException | BufferUnderflowException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable catalog snapshot", e);
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Saves the first {@link #ROW_COUNT} rows of cursor, which must have the columns _id, name
+     * and quantity. Called on the loader thread, the position of cursor is not kept.
+     */
+    static void write(Context context, Cursor cursor) {
+        byte[] bytes;
+        try {
+            bytes = encode(cursor);
+        } catch (IOException e) {
+            //Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        synchronized (CatalogSnapshot.class) {
+            if (Arrays.equals(bytes, lastWritten)) {
+                return;
+            }
+            AtomicFile file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+            FileOutputStream out = null;
+            try {
+                out = file.startWrite();
+                out.write(bytes);
+                file.finishWrite(out);
+                lastWritten = bytes;
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to write the catalog snapshot", e);
+                if (out != null) {
+                    file.failWrite(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the snapshot, the next cold start waits for the first page. The next load
+     * writes it again even if its rows did not change.
+     */
+    static void delete(Context context) {
+        synchronized (CatalogSnapshot.class) {
+            new AtomicFile(new File(context.getFilesDir(), FILE_NAME)).delete();
+            lastWritten = null;
+        }
+    }
+
+    private static byte[] encode(Cursor cursor) throws IOException {
+        int count = Math.min(cursor.getCount(), ROW_COUNT);
+        int idColumnIndex = cursor.getColumnIndexOrThrow(DataEntry._ID);
+        int nameColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+        int quantityColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_QUANTITY);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + count * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(count);
+        for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+            String name = cursor.getString(nameColumnIndex);
+            byte[] nameBytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            out.writeLong(cursor.getLong(idColumnIndex));
+            out.writeInt(cursor.getInt(quantityColumnIndex));
+            out.writeInt(nameBytes.length);
+            out.write(nameBytes);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -1,73 +1,301 @@
 package me.theofrancisco.android.bookstore;
 
-import android.content.Context;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
-import android.support.v4.widget.CursorAdapter;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-//import android.widget.CursorAdapter;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
 
 /**
- Loaders Documentation
- @link https://developer.android.com/guide/components/loaders
- @link https://stuff.mit.edu/afs/sipb/project/android/docs/training/load-data-background/setup-loader.html
- @link https://developer.android.com/guide/topics/ui/layout/listview?utm_source=udacity&utm_medium=course&utm_campaign=android_basics
- @link https://drive.google.com/file/d/1kpDWF-hu-rsN6b20wUrqIRGu377iRrJS/view?usp=sharing
+ * RecyclerView adapter for the catalog, fed from the provider cursor.
+ * When the loader delivers a new cursor the rows of the old and new results are compared on
+ * a background thread with {@link DiffUtil}, and only the rows that changed are dispatched
+ * to the RecyclerView. The old cursor stays on screen until the diff is ready.
+ * <p>
+ * The adapter owns the cursors it receives: it closes a cursor once it has been replaced.
+ *
+ * @link https://developer.android.com/reference/android/support/v7/util/DiffUtil
  */
-public class DataCursorAdapter extends CursorAdapter {
+public class DataCursorAdapter extends RecyclerView.Adapter<DataCursorAdapter.ViewHolder> {
+
+    /**
+     * Callback for a click on a catalog row.
+     */
+    interface OnItemClickListener {
+        void onItemClick(long id);
+    }
+
+    //All the adapters share one thread, the diffs are cheap compared to the queries
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final OnItemClickListener clickListener;
+
+    //Cursor on screen and the snapshot of its rows used for the next diff
+    private Cursor cursor;
+    private Rows rows = Rows.EMPTY;
+
+    //Columns of the cursor on screen, resolved once per swap instead of once per bind
+    private int idColumnIndex;
+    private int nameColumnIndex;
+    private int quantityColumnIndex;
+
+    //Last cursor given to swapCursor(), it is on screen once its diff is dispatched
+    private Cursor pendingCursor;
+    private int generation;
 
     /**
      * Constructs a new {@link DataCursorAdapter}.
      *
-     * @param context The context
-     * @param c       The cursor from which to get the data.
+     * @param clickListener called when a row is clicked
+     */
+    DataCursorAdapter(OnItemClickListener clickListener) {
+        this.clickListener = clickListener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows rows saved from an earlier run while the first real cursor is loading. It is
+     * applied at once, there is nothing on screen to diff against; the next
+     * {@link #swapCursor(Cursor)} replaces it through the usual diff, so rows that did not
+     * change stay where they are. Ignored once a cursor has been given to the adapter.
      */
-    DataCursorAdapter(Context context, Cursor c) {
-        super(context, c, 0 /* flags */);
+    void showSnapshot(Cursor snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        if (cursor != null || pendingCursor != null) {
+            snapshot.close();
+            return;
+        }
+        cursor = snapshot;
+        rows = Rows.read(snapshot);
+        idColumnIndex = snapshot.getColumnIndexOrThrow(DataEntry._ID);
+        nameColumnIndex = snapshot.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+        quantityColumnIndex = snapshot.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_QUANTITY);
+        notifyItemRangeInserted(0, rows.ids.length);
     }
+
+    /**
+     * Replace the cursor. The diff against the rows on screen runs in the background and
+     * the new cursor is shown when it is done. Swapping to null clears the list.
+     */
+    void swapCursor(final Cursor newCursor) {
+        if (newCursor == pendingCursor) {
+            return;
+        }
+        pendingCursor = newCursor;
+        final int swapGeneration = ++generation;
+        final Rows oldRows = rows;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Rows newRows = Rows.read(newCursor);
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new RowsDiff(oldRows, newRows));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyCursor(swapGeneration, newCursor, newRows, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /* Runs on the UI thread */
+    private void applyCursor(int swapGeneration, Cursor newCursor, Rows newRows, DiffUtil.DiffResult diff) {
+        if (swapGeneration != generation) {
+            //A newer cursor arrived while this diff was running, this one is never shown
+            if (newCursor != null && newCursor != pendingCursor && newCursor != cursor) {
+                newCursor.close();
+            }
+            return;
+        }
+        Cursor oldCursor = cursor;
+        cursor = newCursor;
+        rows = newRows;
+        if (newCursor != null) {
+            idColumnIndex = newCursor.getColumnIndexOrThrow(DataEntry._ID);
+            nameColumnIndex = newCursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+            quantityColumnIndex = newCursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_QUANTITY);
+        }
+        diff.dispatchUpdatesTo(this);
+        if (oldCursor != null && oldCursor != newCursor) {
+            oldCursor.close();
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return cursor == null ? 0 : cursor.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (cursor == null || !cursor.moveToPosition(position)) {
+            return RecyclerView.NO_ID;
+        }
+        return cursor.getLong(idColumnIndex);
+    }
+
     /**
      * Makes a new blank list item view. No data is set (or bound) to the views yet.
-     *
-     * @param context app context
-     * @param cursor  The cursor from which to get the data. The cursor is already
-     *                moved to the correct position.
-     * @param parent  The parent to which the new view is attached to
-     * @return the newly created list item view.
      */
+    @NonNull
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        // Inflate a list item view using the layout specified in list_item.xml
-        return LayoutInflater.from(context).inflate(R.layout.item_layout, parent, false);
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in item_layout.xml
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_layout, parent, false);
+        return new ViewHolder(view);
     }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        if (cursor.moveToPosition(position)) {
+            bindView(holder, cursor);
+        }
+    }
+
     /**
-     * This method binds the pet data (in the current row pointed to by cursor) to the given
-     * list item layout. For example, the name for the current pet can be set on the name TextView
-     * in the list item layout.
+     * This method binds the book data (in the current row pointed to by cursor) to the given
+     * list item view holder.
+     * Binding does not allocate: the name is copied into the holder CharArrayBuffer and the
+     * quantity is written as digits into the holder char array.
      *
-     * @param view    Existing view, returned earlier by newView() method
-     * @param context app context
-     * @param cursor  The cursor from which to get the data. The cursor is already moved to the
-     *                correct row.
+     * @param holder Holder of the row views
+     * @param cursor The cursor from which to get the data. The cursor is already moved to the
+     *               correct row.
      */
-    @Override
-    public void bindView(View view, Context context, Cursor cursor) {
-        // Find individual views that we want to modify in the list item layout
-        TextView tvName = view.findViewById(R.id.textview_01);
-        TextView tvQuantity = view.findViewById(R.id.textview_02);
-        // Find the columns of pet attributes that we're interested in
-        int nameColumnIndex = cursor.getColumnIndex(DataEntry.COLUMN_DATA_NAME);
-        int quantityColumnIndex = cursor.getColumnIndex(DataEntry.COLUMN_DATA_QUANTITY);
-        // Read the pet attributes from the Cursor for the current pet
-        String bookName = cursor.getString(nameColumnIndex);
-        String quantity = cursor.getString(quantityColumnIndex);
-        // Update the TextViews with the attributes for the current pet
-        tvName.setText(bookName);
-        tvQuantity.setText(quantity);
+    private void bindView(ViewHolder holder, Cursor cursor) {
+        cursor.copyStringToBuffer(nameColumnIndex, holder.nameBuffer);
+        holder.tvName.setText(holder.nameBuffer.data, 0, holder.nameBuffer.sizeCopied);
+
+        int start = formatInt(cursor.getInt(quantityColumnIndex), holder.quantityBuffer);
+        holder.tvQuantity.setText(holder.quantityBuffer, start, holder.quantityBuffer.length - start);
     }
 
+    /**
+     * Writes the decimal digits of value at the end of buffer, which must hold at least
+     * 11 chars, and returns the index of the first char written.
+     */
+    static int formatInt(int value, char[] buffer) {
+        int position = buffer.length;
+        //Work with the negative value so Integer.MIN_VALUE does not overflow
+        int remaining = value > 0 ? -value : value;
+        do {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+
+    /**
+     * Holds the views of a row, so they are only looked up when the row is created.
+     */
+    class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView tvName;
+        final TextView tvQuantity;
+        //Reused on every bind of this row
+        final CharArrayBuffer nameBuffer = new CharArrayBuffer(64);
+        final char[] quantityBuffer = new char[11];
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            tvName = itemView.findViewById(R.id.textview_01);
+            tvQuantity = itemView.findViewById(R.id.textview_02);
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    long id = getItemId();
+                    if (id != RecyclerView.NO_ID) {
+                        clickListener.onItemClick(id);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Snapshot of the values the list shows, read from a cursor off the UI thread.
+     */
+    private static final class Rows {
+        static final Rows EMPTY = new Rows(new long[0], new String[0], new int[0]);
+
+        final long[] ids;
+        final String[] names;
+        final int[] quantities;
+
+        private Rows(long[] ids, String[] names, int[] quantities) {
+            this.ids = ids;
+            this.names = names;
+            this.quantities = quantities;
+        }
+
+        static Rows read(Cursor cursor) {
+            if (cursor == null) {
+                return EMPTY;
+            }
+            int count = cursor.getCount();
+            Rows rows = new Rows(new long[count], new String[count], new int[count]);
+            int idColumnIndex = cursor.getColumnIndexOrThrow(DataEntry._ID);
+            int nameColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+            int quantityColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_QUANTITY);
+            for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+                rows.ids[i] = cursor.getLong(idColumnIndex);
+                rows.names[i] = cursor.getString(nameColumnIndex);
+                rows.quantities[i] = cursor.getInt(quantityColumnIndex);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Rows are the same item when they have the same _id, and the same content when the
+     * name and quantity shown in the list did not change.
+     */
+    private static final class RowsDiff extends DiffUtil.Callback {
+        private final Rows oldRows;
+        private final Rows newRows;
+
+        RowsDiff(Rows oldRows, Rows newRows) {
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRows.ids.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRows.ids.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldRows.ids[oldItemPosition] == newRows.ids[newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldRows.quantities[oldItemPosition] == newRows.quantities[newItemPosition]
+                    && TextUtils.equals(oldRows.names[oldItemPosition], newRows.names[newItemPosition]);
+        }
+    }
 }
@@ -18,6 +18,7 @@ package me.theofrancisco.android.bookstore;
 import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -59,6 +60,9 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     //flag if the user changes any data
     private boolean editDataHasChanged = false;
 
+    //Quantity of the item when it was loaded, a save sends the difference, not the new value
+    private int loadedQuantity;
+
     //I found a test case where the dialog box was not appearing when the user added details for a new pet but then clicking the back button before saving the details
     //from {@link https://github.com/udacity/ud845-Pets/commit/bea7d9080f06d447892c634f6271cb83eef9762b
     private View.OnKeyListener mKeyListener = new View.OnKeyListener() {
@@ -146,28 +150,27 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     //               mPetHasChanged = savedInstanceState.getBoolean("mPetHasChanged");
     //
 
+    //The write runs on the BookWriteQueue thread and the editor closes right away, so the
+    //result is shown with the application context
     private void saveItem(ContentValues values) {
-        Uri uri = null;
-        try {
-            // Insert a new row in the database, returning the content uri of that new row.
-            uri = getContentResolver().insert(DataEntry.CONTENT_URI, values);
-
-            // Show a toast message depending on whether or not the insertion was successful
-            if (uri == null) {
-                Toast.makeText(this, getString(R.string.editor_insert_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_insert_pet_successful),
-                        Toast.LENGTH_SHORT).show();
+        final Context appContext = getApplicationContext();
+        // Insert a new row in the database, returning the content uri of that new row.
+        BookWriteQueue.getInstance(this).insert(values, new BookWriteQueue.Callback() {
+            @Override
+            public void onWriteFinished(Uri uri, int result) {
+                // Show a toast message depending on whether or not the insertion was successful
+                if (result != BookWriteQueue.RESULT_OK) {
+                    Log.e(LOG_TAG, appContext.getString(R.string.failed_to_insert_row) + " "
+                            + appContext.getString(R.string.uri_is_null));
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_insert_pet_failed),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    // Otherwise, the insertion was successful and we can display a toast.
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_insert_pet_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
             }
-        } catch (Exception e) {
-            Toast.makeText(this, e.getMessage() + "/n" + e.getLocalizedMessage(), Toast.LENGTH_LONG).show();
-            Log.e(LOG_TAG, getString(R.string.failed_to_insert_row));
-            if (uri != null) Log.e(LOG_TAG, uri.toString());
-            else
-                Log.e(LOG_TAG, getString(R.string.uri_is_null));
-        }
+        });
     }
 
     @Override
@@ -222,7 +225,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     }
 
     /**
-     * Get user input from editor and save new pet into database.
+     * Get user input from editor and save new pet into database, through {@link BookWriteQueue}.
      *
      * @link https://developer.android.com/reference/android/content/ContentValues
      */
@@ -261,23 +264,38 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
         if (currentItemUri == null) {
             saveItem(values);     //new pet
+            return;
         }
         // Otherwise this is an EXISTING item, so update the pet with content URI: currentItemUri
         // and pass in the new ContentValues. Pass in null for the selection and selection args
         // because currentPetUri will already identify the correct row in the database that
         // we want to modify.
-        int rowsAffected = getContentResolver().update(currentItemUri, values, null, null);
-        // Show a toast message depending on whether or not the update was successful.
-        if (rowsAffected == 0) {
-            // If no rows were affected, then there was an error with the update.
-            Toast.makeText(this, getString(R.string.editor_update_item_failed),
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            // Otherwise, the update was successful and we can display a toast.
-            Toast.makeText(this, getString(R.string.editor_update_item_successful),
-                    Toast.LENGTH_SHORT).show();
-        }
-
+        // The quantity is not written back: sales made since the item was loaded would be lost.
+        // It is changed from the loaded quantity only if the book still has it.
+        values.remove(DataEntry.COLUMN_DATA_QUANTITY);
+        final Context appContext = getApplicationContext();
+        BookWriteQueue.getInstance(this).update(currentItemUri, values, loadedQuantity, quantity,
+                new BookWriteQueue.Callback() {
+                    @Override
+                    public void onWriteFinished(Uri uri, int result) {
+                        // Show a toast message depending on whether or not the update was successful.
+                        if (result == BookWriteQueue.RESULT_FAILED) {
+                            // If no rows were affected, then there was an error with the update.
+                            Toast.makeText(appContext, appContext.getString(R.string.editor_update_item_failed),
+                                    Toast.LENGTH_SHORT).show();
+                        } else if (result == BookWriteQueue.RESULT_QUANTITY_NOT_SAVED) {
+                            // The other fields were saved, the stock changed since it was loaded
+                            Toast.makeText(appContext, appContext.getString(R.string.editor_update_quantity_not_saved),
+                                    Toast.LENGTH_LONG).show();
+                        } else {
+                            // Otherwise, the update was successful and we can display a toast.
+                            Toast.makeText(appContext, appContext.getString(R.string.editor_update_item_successful),
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+        // A later save of this editor starts from the quantity just saved
+        loadedQuantity = quantity;
     }
 
     @Override
@@ -354,6 +372,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 etName.setText(title);
 
                 int quantity = _cursor.getInt(quantityColumnIndex);
+                loadedQuantity = quantity;
                 Log.i("MyApp", "[EditorActivity.onLoadFinished] quantity: " + quantity);
                 etQuantity.setText(Integer.toString(quantity));
 
@@ -0,0 +1,53 @@
+package me.theofrancisco.android.bookstore;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.MergeCursor;
+
+/**
+ * The pages loaded by {@link CatalogPageLoader} as one cursor.
+ * MergeCursor already reads the getters from the page the position is in, but not
+ * copyStringToBuffer(): AbstractCursor implements it with getString(), which allocates a
+ * String for every bound row. Here it goes to the page as well, whose window copies the
+ * chars straight into the buffer.
+ * <p>
+ * The pages must not change after they are given to the constructor.
+ */
+class PagedCursor extends MergeCursor {
+
+    private final Cursor[] pages;
+    //Position of the first row of every page
+    private final int[] starts;
+
+    PagedCursor(Cursor[] pages) {
+        super(pages);
+        this.pages = pages;
+        starts = new int[pages.length];
+        int start = 0;
+        for (int i = 0; i < pages.length; i++) {
+            starts[i] = start;
+            start += pages[i].getCount();
+        }
+    }
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+        //MergeCursor.onMove() has already moved the page to the row
+        pages[pageOf(getPosition())].copyStringToBuffer(columnIndex, buffer);
+    }
+
+    //Index of the last page starting at or before position, an empty last page starts past it
+    private int pageOf(int position) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,168 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentProvider;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
+
+/**
+ * Streams the books, joined with their supplier, into the pipe opened by {@link MyProvider#openFile} and
+ * {@link MyProvider#openTypedAssetFile}, as CSV ({@link DataEntry#MIME_TYPE_CSV}) or
+ * JSON ({@link DataEntry#MIME_TYPE_JSON}).
+ * <p>
+ * The rows are read by _id in small keyset batches, each written to the pipe before the next
+ * one is read, so the memory used does not depend on the size of the table and a slow reader
+ * of the pipe simply slows the export down. The batches are separate reads, so rows written
+ * during a long export may or may not be in it.
+ */
+class BookExportWriter implements ContentProvider.PipeDataWriter<Void> {
+
+    //Rows read from SQLite at a time
+    private static final int BATCH_ROWS = 100;
+
+    private final MyDbHelper dbHelper;
+    private final String[] columns;
+
+    /**
+     * @param columns columns of the export, the first one must be _id
+     */
+    BookExportWriter(MyDbHelper dbHelper, String[] columns) {
+        this.dbHelper = dbHelper;
+        this.columns = columns;
+    }
+
+    @Override
+    public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts,
+                                Void args) {
+        FileOutputStream outputStream = new FileOutputStream(output.getFileDescriptor());
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try {
+            if (DataEntry.MIME_TYPE_JSON.equals(mimeType)) {
+                writeJson(writer);
+            } else {
+                writeCsv(writer);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            //Usually the reader closed its end of the pipe
+            Log.w(LOG_TAG, "Export of " + uri + " stopped", e);
+        } finally {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to close the export of " + uri, e);
+            }
+        }
+    }
+
+    private void writeCsv(Writer writer) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(columns[i]);
+        }
+        writer.write('\n');
+
+        long lastId = Long.MIN_VALUE;
+        int count;
+        do {
+            Cursor batch = readBatch(lastId);
+            try {
+                count = batch.getCount();
+                while (batch.moveToNext()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writeCsvField(writer, batch.getString(i));
+                    }
+                    writer.write('\n');
+                    lastId = batch.getLong(0);
+                }
+            } finally {
+                batch.close();
+            }
+        } while (count == BATCH_ROWS);
+    }
+
+    //Quotes the value when it contains a separator, a quote or a line break
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginArray();
+        long lastId = Long.MIN_VALUE;
+        int count;
+        do {
+            Cursor batch = readBatch(lastId);
+            try {
+                count = batch.getCount();
+                while (batch.moveToNext()) {
+                    json.beginObject();
+                    for (int i = 0; i < columns.length; i++) {
+                        json.name(columns[i]);
+                        switch (batch.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                json.nullValue();
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                json.value(batch.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                json.value(batch.getDouble(i));
+                                break;
+                            default:
+                                json.value(batch.getString(i));
+                        }
+                    }
+                    json.endObject();
+                    lastId = batch.getLong(0);
+                }
+            } finally {
+                batch.close();
+            }
+        } while (count == BATCH_ROWS);
+        json.endArray();
+        json.flush();
+    }
+
+    //The next BATCH_ROWS books after lastId, walking the primary key
+    private Cursor readBatch(long lastId) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        return database.query(DataEntry.VIEW_NAME, columns, DataEntry._ID + " > ?",
+                new String[]{String.valueOf(lastId)}, null, null, DataEntry._ID,
+                String.valueOf(BATCH_ROWS));
+    }
+}
@@ -0,0 +1,117 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LRU cache of whole books rows for the BOOK_ID lookups of {@link MyProvider}. A row is only
+ * stored if nothing was invalidated since its read started, see {@link #generation()}.
+ */
+class BookRowCache {
+
+    //Columns of a cached row, in this order
+    private final List<String> columns;
+    private final LruCache<Long, Object[]> rows;
+    private long generation;
+
+    BookRowCache(String[] columns, int maxRows) {
+        this.columns = Arrays.asList(columns);
+        this.rows = new LruCache<>(maxRows);
+    }
+
+    /**
+     * Returns a cursor with the projection columns of the cached row, or null when the row
+     * is not cached or the projection asks for something that is not a plain column.
+     */
+    Cursor query(long id, String[] projection) {
+        if (projection == null) {
+            projection = columns.toArray(new String[columns.size()]);
+        }
+        int[] indexes = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            indexes[i] = columns.indexOf(projection[i]);
+            if (indexes[i] < 0) {
+                return null;
+            }
+        }
+        Object[] row = rows.get(id);
+        if (row == null) {
+            return null;
+        }
+        Object[] values = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            values[i] = row[indexes[i]];
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    /**
+     * Returns the value to pass to {@link #put} for a row read from now on.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores the current row of cursor, which must have been queried with all the columns
+     * of the cache, unless the cache was invalidated after readGeneration was taken.
+     */
+    void put(long id, Cursor cursor, long readGeneration) {
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < row.length; i++) {
+            int columnIndex = cursor.getColumnIndexOrThrow(columns.get(i));
+            switch (cursor.getType(columnIndex)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row[i] = cursor.getLong(columnIndex);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    row[i] = cursor.getDouble(columnIndex);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    row[i] = cursor.getString(columnIndex);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    row[i] = cursor.getBlob(columnIndex);
+                    break;
+                default:
+                    row[i] = null;
+            }
+        }
+        synchronized (this) {
+            if (readGeneration == generation) {
+                rows.put(id, row);
+            }
+        }
+    }
+
+    synchronized void invalidate(long id) {
+        generation++;
+        rows.remove(id);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        rows.evictAll();
+    }
+
+    /**
+     * Number of rows in the cache, a write that finds it empty has nothing to invalidate.
+     */
+    int size() {
+        return rows.size();
+    }
+
+    int hitCount() {
+        return rows.hitCount();
+    }
+
+    int missCount() {
+        return rows.missCount();
+    }
+}
@@ -0,0 +1,153 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the change notifications of {@link MyProvider}, one per burst of changes.
+ * <p>
+ * A burst ends when no change arrived for the debounce time, or when it has lasted the max
+ * wait time. A path that changed once (books/42) is notified as it is, a path that changed
+ * several times on its base URI (books). With a debounce of 0 every change is notified at once.
+ */
+class ChangeNotifier {
+
+    private final ContentResolver contentResolver;
+    private final long debounceMillis;
+    private final long maxWaitMillis;
+    //Thread of the handler, null when the handler was given
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    //Changed URIs of the open burst, by first path segment
+    private final Map<String, List<Uri>> pending = new LinkedHashMap<>();
+    //Times of the open burst, in SystemClock.uptimeMillis() like the handler
+    private boolean burstOpen;
+    private long firstChangeAt;
+    private long lastChangeAt;
+    private boolean shutdown;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushWhenDue();
+        }
+    };
+
+    /**
+     * @param debounceMillis quiet time that ends a burst, 0 to notify every change at once
+     * @param maxWaitMillis  longest time a burst is held back, 0 for no limit
+     */
+    ChangeNotifier(ContentResolver contentResolver, long debounceMillis, long maxWaitMillis) {
+        this(contentResolver, debounceMillis, maxWaitMillis, null);
+    }
+
+    //Package-private for the tests, they give a handler of the main looper to control the time
+    ChangeNotifier(ContentResolver contentResolver, long debounceMillis, long maxWaitMillis, Handler handler) {
+        this.contentResolver = contentResolver;
+        this.debounceMillis = debounceMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        if (handler == null && debounceMillis > 0) {
+            thread = new HandlerThread("ChangeNotifier");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        } else {
+            thread = null;
+        }
+        this.handler = handler;
+    }
+
+    void notifyChange(Uri uri) {
+        synchronized (this) {
+            if (debounceMillis > 0 && !shutdown) {
+                String path = uri.getPathSegments().isEmpty() ? "" : uri.getPathSegments().get(0);
+                List<Uri> uris = pending.get(path);
+                if (uris == null) {
+                    uris = new ArrayList<>();
+                    pending.put(path, uris);
+                }
+                //Two different URIs are enough to know the base URI will be notified
+                if (uris.size() < 2 && !uris.contains(uri)) {
+                    uris.add(uri);
+                }
+                lastChangeAt = SystemClock.uptimeMillis();
+                if (!burstOpen) {
+                    //Later changes only move lastChangeAt, flushWhenDue() waits for them
+                    burstOpen = true;
+                    firstChangeAt = lastChangeAt;
+                    handler.postDelayed(flushRunnable, debounceMillis);
+                }
+                return;
+            }
+        }
+        contentResolver.notifyChange(uri, null);
+    }
+
+    /**
+     * Sends the pending notifications and stops the thread, called when the provider shuts
+     * down. Later changes are notified at once.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            if (handler != null) {
+                handler.removeCallbacks(flushRunnable);
+            }
+        }
+        flush();
+        if (thread != null) {
+            thread.quitSafely();
+        }
+    }
+
+    //Runs on the handler, sends the burst if it is over or waits for its end
+    private void flushWhenDue() {
+        synchronized (this) {
+            if (!burstOpen) {
+                return;
+            }
+            long due = lastChangeAt + debounceMillis;
+            if (maxWaitMillis > 0) {
+                due = Math.min(due, firstChangeAt + maxWaitMillis);
+            }
+            long now = SystemClock.uptimeMillis();
+            if (now < due) {
+                handler.postDelayed(flushRunnable, due - now);
+                return;
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        List<Uri> toNotify = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, List<Uri>> entry : pending.entrySet()) {
+                List<Uri> uris = entry.getValue();
+                if (uris.size() == 1) {
+                    toNotify.add(uris.get(0));
+                } else {
+                    Uri first = uris.get(0);
+                    toNotify.add(new Uri.Builder()
+                            .scheme(first.getScheme())
+                            .authority(first.getAuthority())
+                            .path(entry.getKey())
+                            .build());
+                }
+            }
+            pending.clear();
+            burstOpen = false;
+        }
+        for (Uri uri : toNotify) {
+            contentResolver.notifyChange(uri, null);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.ImportEntry;
+
+import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
+
+/**
+ * Imports a supplier price list in CSV format into the books table.
+ * <p>
+ * The file is streamed: only the current record and the current chunk are in memory.
+ * The first record is the header, with the {@link DataEntry} column names (name, quantity,
+ * buy_price, supplier, supplier_ph, isbn) in any order; unknown columns are ignored.
+ * Records with the ISBN of a book already in the table update it, so importing a file again
+ * does not duplicate its books.
+ * Every {@link #CHUNK_SIZE} records are written with one bulkInsert(), in one transaction that
+ * also saves how many records of the source are done. Running the import again for the same
+ * source, for instance after a crash, skips the records of the committed chunks.
+ * <p>
+ * It does disk and database work, so call {@link #importCsv} from a background thread.
+ */
+public class CsvImporter {
+
+    /**
+     * Receives the progress of the import after every committed chunk.
+     */
+    public interface ProgressListener {
+        void onProgress(long recordsDone);
+    }
+
+    //Records written in every transaction
+    static final int CHUNK_SIZE = 1000;
+
+    private final ContentResolver contentResolver;
+
+    public CsvImporter(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Imports the CSV file at source, resuming after the last committed chunk of a previous
+     * run. When the whole file is in, its progress is removed so it could be imported again.
+     *
+     * @param listener told about the progress, can be null
+     * @return the number of records of the file done, including the ones of previous runs
+     */
+    public long importCsv(Uri source, ProgressListener listener) throws IOException {
+        String sourceKey = source.toString();
+        long committed = readProgress(sourceKey);
+
+        InputStream inputStream = contentResolver.openInputStream(source);
+        if (inputStream == null) {
+            throw new IOException("Can not open " + source);
+        }
+        CsvReader reader = new CsvReader(new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        try {
+            List<String> record = new ArrayList<>();
+            if (!reader.readRecord(record)) {
+                return 0;
+            }
+            int[] columns = mapHeader(record);
+
+            long records = 0;
+            List<ContentValues> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (reader.readRecord(record)) {
+                records++;
+                if (records <= committed) {
+                    continue;
+                }
+                ContentValues values = toValues(record, columns);
+                if (values == null) {
+                    Log.e(LOG_TAG, "Skipping invalid CSV record " + records + " of " + source);
+                } else {
+                    chunk.add(values);
+                }
+                if (records - committed == CHUNK_SIZE) {
+                    commitChunk(sourceKey, chunk, records);
+                    committed = records;
+                    if (listener != null) {
+                        listener.onProgress(committed);
+                    }
+                }
+            }
+            if (records > committed) {
+                commitChunk(sourceKey, chunk, records);
+                committed = records;
+                if (listener != null) {
+                    listener.onProgress(committed);
+                }
+            }
+            contentResolver.delete(ImportEntry.CONTENT_URI, ImportEntry.COLUMN_SOURCE + "=?",
+                    new String[]{sourceKey});
+            return committed;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private long readProgress(String sourceKey) {
+        Cursor cursor = contentResolver.query(ImportEntry.CONTENT_URI,
+                new String[]{ImportEntry.COLUMN_RECORDS},
+                ImportEntry.COLUMN_SOURCE + "=?", new String[]{sourceKey}, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //Writes the chunk and the progress in one transaction, then empties the chunk
+    private void commitChunk(String sourceKey, List<ContentValues> chunk, long records) {
+        contentResolver.bulkInsert(ImportEntry.buildChunkUri(sourceKey, records),
+                chunk.toArray(new ContentValues[chunk.size()]));
+        chunk.clear();
+    }
+
+    //Columns of the books table, in the order of {@link #mapHeader}
+    private static final String[] COLUMNS = {
+            DataEntry.COLUMN_DATA_NAME,
+            DataEntry.COLUMN_DATA_QUANTITY,
+            DataEntry.COLUMN_DATA_PRICE,
+            DataEntry.COLUMN_DATA_SUPPLIER,
+            DataEntry.COLUMN_DATA_SUPPLIER_PH,
+            DataEntry.COLUMN_DATA_ISBN};
+
+    //For every column of COLUMNS, its position in the CSV records or -1
+    private static int[] mapHeader(List<String> header) throws IOException {
+        int[] positions = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            positions[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (COLUMNS[i].equalsIgnoreCase(header.get(j).trim())) {
+                    positions[i] = j;
+                }
+            }
+        }
+        if (positions[0] == -1) {
+            throw new IOException("The CSV header has no " + DataEntry.COLUMN_DATA_NAME + " column");
+        }
+        return positions;
+    }
+
+    //Parses a record into the book columns, or returns null when it is not valid
+    private static ContentValues toValues(List<String> record, int[] columns) {
+        ContentValues values = new ContentValues(COLUMNS.length);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int position = columns[i];
+            String value = position >= 0 && position < record.size() ? record.get(position).trim() : "";
+            try {
+                if (DataEntry.COLUMN_DATA_QUANTITY.equals(COLUMNS[i])) {
+                    values.put(COLUMNS[i], value.isEmpty() ? 0 : Integer.parseInt(value));
+                } else if (DataEntry.COLUMN_DATA_PRICE.equals(COLUMNS[i])) {
+                    values.put(COLUMNS[i], value.isEmpty() ? 0 : Double.parseDouble(value));
+                } else if (DataEntry.COLUMN_DATA_ISBN.equals(COLUMNS[i])) {
+                    //Books without an ISBN are null, an empty text would be unique
+                    values.put(COLUMNS[i], DataEntry.normalizeIsbn(value));
+                } else {
+                    values.put(COLUMNS[i], value);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return values.getAsString(DataEntry.COLUMN_DATA_NAME).isEmpty() ? null : values;
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated fields, optionally between double quotes,
+     * where a quoted field can contain commas, line breaks and "" for a quote.
+     */
+    private static final class CsvReader {
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next record into fields, returns false at the end of the file.
+         * Empty lines are skipped.
+         */
+        boolean readRecord(List<String> fields) throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean fieldStarted = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                    fieldStarted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    fieldStarted = true;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (fieldStarted || field.length() > 0) {
+                        fields.add(field.toString());
+                        return true;
+                    }
+                } else {
+                    field.append((char) c);
+                    fieldStarted = true;
+                }
+            }
+            if (fieldStarted || field.length() > 0) {
+                fields.add(field.toString());
+                return true;
+            }
+            return false;
+        }
+
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package me.theofrancisco.android.bookstore.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
+import android.os.Bundle;
 import android.provider.BaseColumns;
 
 /**
@@ -39,6 +41,40 @@ public final class DataContract {
      * as the ContentProvider hasn't been given any information on what to do with "staff".
      */
     static final String PATH_BOOKS = "books";
+    /**
+     * Path appended to {@link DataEntry#CONTENT_URI} for the full-text search,
+     * content://me.theofrancisco.android.bookstore/books/search/term
+     */
+    static final String PATH_SEARCH = "search";
+    /**
+     * Path appended to {@link DataEntry#CONTENT_URI} to open the export of the books table,
+     * content://me.theofrancisco.android.bookstore/books/export
+     */
+    static final String PATH_EXPORT = "export";
+    /**
+     * Path of the committed progress of the CSV imports.
+     */
+    static final String PATH_IMPORTS = "imports";
+    /**
+     * Path appended to {@link DataEntry#CONTENT_URI} for the inventory totals,
+     * content://me.theofrancisco.android.bookstore/books/summary
+     */
+    static final String PATH_SUMMARY = "summary";
+    /**
+     * Path of the suppliers table, content://me.theofrancisco.android.bookstore/suppliers.
+     * It is also appended to {@link SummaryEntry#CONTENT_URI} for the totals per supplier.
+     */
+    static final String PATH_SUPPLIERS = "suppliers";
+    /**
+     * Path appended to {@link DataEntry#CONTENT_URI} to find a book by ISBN,
+     * content://me.theofrancisco.android.bookstore/books/isbn/9780316769488
+     */
+    static final String PATH_ISBN = "isbn";
+    /**
+     * Path appended to {@link DataEntry#CONTENT_URI} for the books changed since a version,
+     * content://me.theofrancisco.android.bookstore/books/changes?since=42
+     */
+    static final String PATH_CHANGES = "changes";
     /*
     BASE_CONTENT_URI
       Next, we concatenate the CONTENT_AUTHORITY constant with the scheme
@@ -50,6 +86,12 @@ public final class DataContract {
           the content provider.
      */
     private static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
+
+    /**
+     * Provider method, for ContentResolver.call(), that returns the latency histograms,
+     * row counts and slow operation log of the provider in a Bundle.
+     */
+    public static final String METHOD_GET_METRICS = "get_metrics";
     // To prevent someone from accidentally instantiating the contract class,
     // give it an empty constructor.
     private DataContract() {
@@ -68,6 +110,20 @@ public final class DataContract {
          */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_BOOKS);
 
+        /**
+         * Base URI of the full-text search over name and supplier. Use {@link #buildSearchUri}.
+         */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * URI of the streamed export of the books table. Open it with openInputStream() for
+         * CSV, or with openTypedAssetFileDescriptor() and {@link #MIME_TYPE_CSV} or
+         * {@link #MIME_TYPE_JSON}.
+         */
+        public static final Uri CONTENT_EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+        public static final String MIME_TYPE_CSV = "text/csv";
+        public static final String MIME_TYPE_JSON = "application/json";
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of pets.
          */
@@ -82,12 +138,417 @@ public final class DataContract {
 
         //Name of database table
         final static String TABLE_NAME = "books";
+        //Name of the view of the books joined with their supplier
+        final static String VIEW_NAME = "books_view";
+        //Name of the FTS table that indexes name and supplier of the books table
+        final static String FTS_TABLE_NAME = "books_fts";
         public final static String COLUMN_DATA_NAME = "name";        //TEXT
         public final static String COLUMN_DATA_QUANTITY = "quantity"; //INTEGER
         public final static String COLUMN_DATA_PRICE = "buy_price"; //REAL
+        public final static String COLUMN_DATA_SUPPLIER_ID = "supplier_id"; //INTEGER, SupplierEntry._ID
+        public final static String COLUMN_DATA_ISBN = "isbn"; //TEXT, unique, can be null
+
+        /**
+         * Name and phone of the supplier of the book, read from {@link SupplierEntry}.
+         * Writing them to a book looks the supplier up by name, creating it when it is new
+         * and changing its phone, for all of its books, when the phone is different.
+         * Writing only the phone changes the phone of the current supplier of the book.
+         */
         public final static String COLUMN_DATA_SUPPLIER = "supplier"; //TEXT
         public final static String COLUMN_DATA_SUPPLIER_PH = "supplier_ph"; //TEXT
+
+        /**
+         * Case insensitive sort order by name. It matches the name index, so sorting with
+         * it does not need a temporary B-tree.
+         */
+        public final static String SORT_BY_NAME = COLUMN_DATA_NAME + " COLLATE NOCASE";
+
+        /**
+         * Columns rendered by the catalog list. They are all in the (name, quantity) covering
+         * index, so a list query sorted by {@link #SORT_BY_NAME} never reads the table rows
+         * and the cursor window does not carry the price and supplier text.
+         */
+        public final static String[] LIST_SUMMARY_PROJECTION = {
+                _ID,
+                COLUMN_DATA_NAME,
+                COLUMN_DATA_QUANTITY};
+
+        /**
+         * Query parameters of a keyset page of {@link #CONTENT_URI}. A page returns the rows
+         * that come after (name, _id) in {@link #SORT_BY_NAME} order. Use {@link #buildPageUri}.
+         */
+        public final static String QUERY_PARAMETER_AFTER_NAME = "after_name";
+        public final static String QUERY_PARAMETER_AFTER_ID = "after_id";
+        public final static String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Returns the URI of the page of pageSize books that follow the given book in the
+         * {@link #SORT_BY_NAME}, _id order. Pass a null afterName for the first page.
+         */
+        public static Uri buildPageUri(String afterName, long afterId, int pageSize) {
+            return buildPageUri(null, afterName, afterId, pageSize);
+        }
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} that keeps only the books whose name starts
+         * with it, ignoring the case of ASCII letters like {@link #SORT_BY_NAME}. It is read as
+         * a range of the name index, not a LIKE scan of the table.
+         */
+        public final static String QUERY_PARAMETER_NAME_PREFIX = "name_prefix";
+
+        /**
+         * Like {@link #buildPageUri(String, long, int)}, only for the books whose name starts
+         * with namePrefix. A null or empty namePrefix keeps every book.
+         */
+        public static Uri buildPageUri(String namePrefix, String afterName, long afterId, int pageSize) {
+            Uri.Builder builder = CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(pageSize));
+            if (namePrefix != null && !namePrefix.isEmpty()) {
+                builder.appendQueryParameter(QUERY_PARAMETER_NAME_PREFIX, namePrefix);
+            }
+            if (afterName != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_NAME, afterName)
+                        .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Query parameters of the typed filter of {@link #CONTENT_URI}, build them with
+         * {@link BookFilter}. They are ANDed with the selection of a query, update or delete
+         * and bound as arguments, never pasted into the SQL, so
+         * delete(new BookFilter().supplier(3).buildUri(), null, null) only deletes the books
+         * of supplier 3.
+         */
+        public final static String QUERY_PARAMETER_MIN_PRICE = "min_price";
+        public final static String QUERY_PARAMETER_MAX_PRICE = "max_price";
+        public final static String QUERY_PARAMETER_SUPPLIER_ID = "supplier_id";
+        public final static String QUERY_PARAMETER_IN_STOCK = "in_stock";
+        public final static String QUERY_PARAMETER_SORT = "sort";
+
+        /**
+         * Values of {@link #QUERY_PARAMETER_SORT}. The sort is used when the query has no
+         * sort order of its own; a keyset page is always in {@link #SORT_BY_NAME} order.
+         */
+        public final static String SORT_NAME = "name";
+        public final static String SORT_PRICE = "price";
+        public final static String SORT_PRICE_DESCENDING = "price_desc";
+
+        /**
+         * Filter and sort of the books list by price range, supplier and stock.
+         * Every combination is served by an index of the books table: the supplier with the
+         * (supplier_id, buy_price, quantity) index, the price without a supplier with the
+         * (buy_price, quantity) index, and the stock alone with the quantity index or, when
+         * sorted, the index of the sort.
+         * <pre>
+         * Uri uri = new BookFilter().priceRange(5, 20).inStock().sortBy(SORT_PRICE).buildUri();
+         * </pre>
+         */
+        public static final class BookFilter {
+            private Double minPrice;
+            private Double maxPrice;
+            private long supplierId = -1;
+            private boolean inStock;
+            private String sort;
+
+            /**
+             * Keeps the books with minPrice <= price <= maxPrice.
+             */
+            public BookFilter priceRange(double minPrice, double maxPrice) {
+                return minPrice(minPrice).maxPrice(maxPrice);
+            }
+
+            public BookFilter minPrice(double minPrice) {
+                this.minPrice = minPrice;
+                return this;
+            }
+
+            public BookFilter maxPrice(double maxPrice) {
+                this.maxPrice = maxPrice;
+                return this;
+            }
+
+            /**
+             * Keeps the books of the supplier with this {@link SupplierEntry#_ID}.
+             */
+            public BookFilter supplier(long supplierId) {
+                this.supplierId = supplierId;
+                return this;
+            }
+
+            /**
+             * Keeps the books with a quantity above zero.
+             */
+            public BookFilter inStock() {
+                this.inStock = true;
+                return this;
+            }
+
+            /**
+             * @param sort {@link #SORT_NAME}, {@link #SORT_PRICE} or {@link #SORT_PRICE_DESCENDING}
+             */
+            public BookFilter sortBy(String sort) {
+                if (!SORT_NAME.equals(sort) && !SORT_PRICE.equals(sort) && !SORT_PRICE_DESCENDING.equals(sort)) {
+                    throw new IllegalArgumentException("Unknown sort " + sort);
+                }
+                this.sort = sort;
+                return this;
+            }
+
+            /**
+             * Returns the {@link #CONTENT_URI} with the query parameters of this filter.
+             */
+            public Uri buildUri() {
+                Uri.Builder builder = CONTENT_URI.buildUpon();
+                if (minPrice != null) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_MIN_PRICE, String.valueOf(minPrice));
+                }
+                if (maxPrice != null) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_MAX_PRICE, String.valueOf(maxPrice));
+                }
+                if (supplierId != -1) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_SUPPLIER_ID, String.valueOf(supplierId));
+                }
+                if (inStock) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_IN_STOCK, "true");
+                }
+                if (sort != null) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_SORT, sort);
+                }
+                return builder.build();
+            }
+        }
+
+        /**
+         * Provider method, for ContentResolver.call() on {@link #CONTENT_URI}, that adds a delta
+         * to the quantity of books without reading them first: every (id, delta) pair is one
+         * UPDATE quantity = quantity + delta, so concurrent sales never overwrite each other.
+         * A pair is not applied when the quantity would become negative or the book does not
+         * exist. Build the extras with {@link #buildAdjustStockExtras}; the result holds
+         * {@link #EXTRA_ADJUSTED}, whether every pair was applied.
+         * With {@link #EXTRA_EXPECTED_QUANTITIES} a pair is only applied while the book still has
+         * the expected quantity, so an editor can not overwrite a change it has not seen.
+         */
+        public final static String METHOD_ADJUST_STOCK = "adjust_stock";
+        public final static String EXTRA_BOOK_IDS = "book_ids"; //long[]
+        public final static String EXTRA_DELTAS = "deltas";     //int[]
+        public final static String EXTRA_EXPECTED_QUANTITIES = "expected_quantities"; //int[], optional
+        public final static String EXTRA_ADJUSTED = "adjusted"; //boolean[]
+
+        /**
+         * Returns the extras of {@link #METHOD_ADJUST_STOCK}, deltas[i] is added to book ids[i].
+         */
+        public static Bundle buildAdjustStockExtras(long[] ids, int[] deltas) {
+            Bundle extras = new Bundle();
+            extras.putLongArray(EXTRA_BOOK_IDS, ids);
+            extras.putIntArray(EXTRA_DELTAS, deltas);
+            return extras;
+        }
+
+        /**
+         * Returns the extras of a compare-and-set {@link #METHOD_ADJUST_STOCK}: deltas[i] is
+         * added to book ids[i] only if its quantity is still expected[i].
+         */
+        public static Bundle buildAdjustStockExtras(long[] ids, int[] deltas, int[] expected) {
+            Bundle extras = buildAdjustStockExtras(ids, deltas);
+            extras.putIntArray(EXTRA_EXPECTED_QUANTITIES, expected);
+            return extras;
+        }
+
+        /**
+         * Returns the URI of the book with the given ISBN, a lookup in the unique ISBN index.
+         *
+         * @throws IllegalArgumentException if isbn is null or has no digits
+         */
+        public static Uri buildIsbnUri(String isbn) {
+            String normalized = normalizeIsbn(isbn);
+            if (normalized == null) {
+                throw new IllegalArgumentException("Not an ISBN: " + isbn);
+            }
+            return Uri.withAppendedPath(Uri.withAppendedPath(CONTENT_URI, PATH_ISBN), normalized);
+        }
+
+        /**
+         * Returns the ISBN as it is stored: digits and the X check digit only, so "0-316-76948-7"
+         * and "0316769487" are the same book. Returns null for null or for text without digits.
+         */
+        public static String normalizeIsbn(String isbn) {
+            if (isbn == null) {
+                return null;
+            }
+            StringBuilder normalized = new StringBuilder(isbn.length());
+            for (int i = 0; i < isbn.length(); i++) {
+                char c = isbn.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    normalized.append(c);
+                } else if (c == 'X' || c == 'x') {
+                    normalized.append('X');
+                }
+            }
+            return normalized.length() == 0 ? null : normalized.toString();
+        }
+
+        /**
+         * Returns the URI to search the books whose name or supplier contain words starting
+         * with the words of the given text. Results are ranked with name matches first.
+         * The text is encoded as one path segment, so "AC/DC" or "C# primer" reach the
+         * provider as they were typed.
+         *
+         * @throws IllegalArgumentException if text is null or blank
+         */
+        public static Uri buildSearchUri(String text) {
+            if (text == null || text.trim().isEmpty()) {
+                throw new IllegalArgumentException("Search text must not be blank");
+            }
+            return CONTENT_SEARCH_URI.buildUpon().appendPath(text).build();
+        }
     }
 
-}
+    /**
+     * Progress of the imports made with {@link CsvImporter}. Each row is the number of records
+     * of a source that are already in the books table. It is written in the same transaction
+     * as the chunk of books, so after a crash an import resumes exactly after the last
+     * committed chunk.
+     */
+    public static final class ImportEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of imports.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        //Name of database table
+        final static String TABLE_NAME = "imports";
+        public final static String COLUMN_SOURCE = "source";   //TEXT, unique
+        public final static String COLUMN_RECORDS = "records"; //INTEGER
+
+        /**
+         * Query parameters of a bulk insert into {@link DataEntry#CONTENT_URI} that is a chunk
+         * of an import. Use {@link #buildChunkUri}.
+         */
+        public final static String QUERY_PARAMETER_SOURCE = "import_source";
+        public final static String QUERY_PARAMETER_RECORDS = "import_records";
+
+        /**
+         * Returns the books URI to bulk insert a chunk of the import of source. When the
+         * chunk commits, the import progress of source becomes records.
+         */
+        public static Uri buildChunkUri(String source, long records) {
+            return DataEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SOURCE, source)
+                    .appendQueryParameter(QUERY_PARAMETER_RECORDS, String.valueOf(records))
+                    .build();
+        }
+    }
+
+    /**
+     * Change log of the books, for the delta sync with the back office.
+     * Triggers append a row with a new, always increasing, version every time a book is
+     * inserted, updated or deleted (or its supplier changes). {@link #buildChangesUri} returns
+     * every book changed after a version once, at its last version, with its current
+     * {@link DataEntry} columns, or as a tombstone with {@link #COLUMN_DELETED} set and
+     * null columns when it was deleted. A sync stores the highest version it received and
+     * asks for the changes since it next time, so it reads the changes, not the catalog.
+     * Deleting from {@link #CONTENT_URI} with a version selection prunes the log once every
+     * client has synced past it.
+     */
+    public static final class ChangeEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(DataEntry.CONTENT_URI, PATH_CHANGES);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of changes.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_CHANGES;
+
+        //Name of database table
+        final static String TABLE_NAME = "book_changes";
+        public final static String COLUMN_VERSION = "version";   //INTEGER, increasing
+        public final static String COLUMN_BOOK_ID = "book_id";   //INTEGER, in the log table only
+        public final static String COLUMN_DELETED = "deleted";   //INTEGER, 1 for a tombstone
+
+        //Query parameter with the last version the client has
+        public final static String QUERY_PARAMETER_SINCE = "since";
 
+        /**
+         * Returns the URI of the books changed after sinceVersion, in version order.
+         * Use 0 for a first, full sync.
+         */
+        public static Uri buildChangesUri(long sinceVersion) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, String.valueOf(sinceVersion))
+                    .build();
+        }
+    }
+
+    /**
+     * Suppliers of the books. Every book references one supplier through
+     * {@link DataEntry#COLUMN_DATA_SUPPLIER_ID}, so the name and phone are stored once
+     * and changing a phone is a single row update.
+     * The books of a supplier, joined with it, are at {@link #buildBooksUri}.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier.
+         */
+        static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        //Name of database table
+        final static String TABLE_NAME = "suppliers";
+        public final static String COLUMN_NAME = "name";   //TEXT, unique
+        public final static String COLUMN_PHONE = "phone"; //TEXT
+
+        /**
+         * Returns the URI of the books of the supplier, with the {@link DataEntry} columns.
+         */
+        public static Uri buildBooksUri(long supplierId) {
+            return ContentUris.withAppendedId(CONTENT_URI, supplierId).buildUpon()
+                    .appendPath(PATH_BOOKS)
+                    .build();
+        }
+    }
+
+    /**
+     * Inventory totals, kept per supplier by triggers on the books table.
+     * {@link #CONTENT_URI} returns one row with the overall totals and
+     * {@link #CONTENT_SUPPLIERS_URI} one row per supplier.
+     */
+    public static final class SummaryEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(DataEntry.CONTENT_URI, PATH_SUMMARY);
+        public static final Uri CONTENT_SUPPLIERS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the overall totals.
+         */
+        static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUMMARY;
+
+        /**
+         * The MIME type of the {@link #CONTENT_SUPPLIERS_URI} for the totals of every supplier.
+         */
+        static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUMMARY;
+
+        //Name of the view of the suppliers with books (a table up to database version 7)
+        final static String TABLE_NAME = "supplier_totals";
+        public final static String COLUMN_SUPPLIER = "supplier";             //TEXT, per supplier only
+        public final static String COLUMN_BOOK_COUNT = "book_count";         //INTEGER
+        public final static String COLUMN_TOTAL_QUANTITY = "total_quantity"; //INTEGER
+        public final static String COLUMN_STOCK_VALUE = "stock_value";       //REAL, quantity * buy_price
+    }
+}
@@ -16,10 +16,23 @@
 package me.theofrancisco.android.bookstore.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import me.theofrancisco.android.bookstore.data.DataContract.ChangeEntry;
 import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.ImportEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.SummaryEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
 
 /**
  * Database helper for Pets app. Manages database creation and version management.
@@ -36,7 +49,56 @@ public class MyDbHelper extends SQLiteOpenHelper {
     /**
      * Database version. If you change the database schema, you must increment the database version.
      */
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 11;
+
+    /**
+     * Version of the schema created by {@link #createBaseSchema(SQLiteDatabase)}. Everything
+     * newer than this is added by the migrations in {@link #migrate(SQLiteDatabase, int)}.
+     */
+    private static final int BASE_VERSION = 2;
+
+    /**
+     * WAL checkpoint modes.
+     * AUTOMATIC lets SQLite checkpoint when the log reaches {@link #AUTO_CHECKPOINT_PAGES},
+     * PERIODIC checkpoints every {@link #PERIODIC_CHECKPOINT_SECONDS} on a background thread,
+     * MANUAL checkpoints when the provider asks for it with {@link #checkpointIfManual()}: after
+     * the writes of many rows and when the UI of the app is hidden, never in the middle of a
+     * burst of small writes.
+     */
+    public static final int CHECKPOINT_AUTOMATIC = 0;
+    public static final int CHECKPOINT_PERIODIC = 1;
+    public static final int CHECKPOINT_MANUAL = 2;
+
+    //Names of the modes in the checkpoint_mode meta-data of the provider, by mode
+    private static final String[] CHECKPOINT_MODE_NAMES = {"automatic", "periodic", "manual"};
+
+    private static final int AUTO_CHECKPOINT_PAGES = 1000;
+    private static final long PERIODIC_CHECKPOINT_SECONDS = 30;
+
+    /**
+     * auto_vacuum mode that keeps the pages freed by deletes in the file until
+     * {@link #reclaimFreePages(SQLiteDatabase)} gives them back.
+     */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    //Pages given back by every incremental_vacuum step, the write lock is free between steps
+    private static final int VACUUM_STEP_PAGES = 256;
+    //Free pages a delete has to leave before they are given back
+    private static final int RECLAIM_MIN_FREE_PAGES = VACUUM_STEP_PAGES;
+
+    private final int checkpointMode;
+    private ScheduledExecutorService checkpointExecutor;
+    //Runs reclaimFreePages() after large deletes and the manual checkpoints, so the write
+    //that asked for them does not wait
+    private ExecutorService backgroundExecutor;
+    //A reclaim or a checkpoint is queued and has not started yet, later requests are merged
+    private boolean reclaimQueued;
+    private boolean checkpointQueued;
+    //Set by close() until the database is opened again, the background tasks then do nothing
+    //instead of opening it
+    private boolean closed;
+    //Set by onCreate(), the new file is converted to incremental auto-vacuum in onOpen()
+    private boolean created;
 
     /**
      * Constructs a new instance of {@link MyDbHelper}.
@@ -44,14 +106,275 @@ public class MyDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     MyDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, CHECKPOINT_AUTOMATIC);
+    }
+
+    /**
+     * Constructs a new instance of {@link MyDbHelper} with the given WAL checkpoint mode.
+     * The database is opened in write-ahead-logging mode, so the framework keeps a pool of
+     * read connections and the CursorLoader reads are not blocked by a running write.
+     *
+     * @param context        of the app
+     * @param checkpointMode one of CHECKPOINT_AUTOMATIC, CHECKPOINT_PERIODIC or CHECKPOINT_MANUAL
+     */
+    MyDbHelper(Context context, int checkpointMode) {
+        this(context, DATABASE_NAME, checkpointMode);
+    }
+
+    /**
+     * Constructs a helper of another database file with the schema of bstore.db, for the
+     * benchmarks, which must not touch the catalog of the app.
+     */
+    MyDbHelper(Context context, String name, int checkpointMode) {
+        super(context, name, null, DATABASE_VERSION);
+        this.checkpointMode = checkpointMode;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Called when the connection is being configured, before onCreate/onUpgrade.
+     * Only the automatic mode lets SQLite checkpoint on commit.
+     * Foreign keys are enforced, so a supplier that still has books can not be deleted.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+        int pages = checkpointMode == CHECKPOINT_AUTOMATIC ? AUTO_CHECKPOINT_PAGES : 0;
+        runPragma(db, "PRAGMA wal_autocheckpoint=" + pages);
+    }
+
+    @Override
+    public synchronized void onOpen(SQLiteDatabase db) {
+        closed = false;
+        if (created) {
+            //Outside of the onCreate() transaction, and the file is still almost empty
+            created = false;
+            enableIncrementalVacuum(db);
+        }
+        if (checkpointMode == CHECKPOINT_PERIODIC && checkpointExecutor == null) {
+            checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
+            checkpointExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    checkpointIfOpen();
+                }
+            }, PERIODIC_CHECKPOINT_SECONDS, PERIODIC_CHECKPOINT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Copies the pages of the write-ahead log back into bstore.db.
+     * PASSIVE never waits for readers or writers, so it is safe to call at any time.
+     */
+    public void checkpoint() {
+        runPragma(getWritableDatabase(), "PRAGMA wal_checkpoint(PASSIVE)");
+    }
+
+    /**
+     * Queues a {@link #checkpoint()} on a background thread when the mode is
+     * {@link #CHECKPOINT_MANUAL}, the other modes checkpoint by themselves.
+     */
+    public synchronized void checkpointIfManual() {
+        if (checkpointMode != CHECKPOINT_MANUAL || checkpointQueued) {
+            return;
+        }
+        checkpointQueued = true;
+        runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MyDbHelper.this) {
+                    checkpointQueued = false;
+                }
+                checkpointIfOpen();
+            }
+        });
+    }
+
+    //The checkpoint of the background threads, skipped once the helper is closed
+    private void checkpointIfOpen() {
+        SQLiteDatabase db = acquireOpenDatabase();
+        if (db == null) {
+            return;
+        }
+        try {
+            runPragma(db, "PRAGMA wal_checkpoint(PASSIVE)");
+        } catch (SQLiteException e) {
+            Log.w(LOG_TAG, "Failed to checkpoint " + getDatabaseName(), e);
+        } finally {
+            db.releaseReference();
+        }
+    }
+
+    //The database with a reference for a background task, so a close() meanwhile does not
+    //close it under the task. Null once the helper is closed: the task must not reopen it.
+    private synchronized SQLiteDatabase acquireOpenDatabase() {
+        if (closed) {
+            return null;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.acquireReference();
+        return db;
+    }
+
+    /**
+     * Parses the checkpoint_mode meta-data of the provider: automatic, periodic or manual.
+     *
+     * @throws IllegalArgumentException if the name is not one of them
+     */
+    static int parseCheckpointMode(String name) {
+        for (int mode = 0; mode < CHECKPOINT_MODE_NAMES.length; mode++) {
+            if (CHECKPOINT_MODE_NAMES[mode].equals(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown checkpoint mode " + name);
+    }
+
+    /**
+     * Closes the database and drops the queued background tasks, a task that is running
+     * finishes on its reference to the database.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdownNow();
+            checkpointExecutor = null;
+        }
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+            backgroundExecutor = null;
+            reclaimQueued = false;
+            checkpointQueued = false;
+        }
+        super.close();
+    }
+
+    /**
+     * Queues {@link #reclaimFreePagesLater()} when the deletes have left at least
+     * {@link #RECLAIM_MIN_FREE_PAGES} free pages in the file. Reading the count is cheap,
+     * it is in the header of the file. Must be called outside of a transaction.
+     */
+    public void reclaimFreePagesIfNeeded(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) >= RECLAIM_MIN_FREE_PAGES) {
+            reclaimFreePagesLater();
+        }
+    }
+
+    /**
+     * Queues {@link #reclaimFreePages(SQLiteDatabase)} on a background thread. The caller,
+     * a binder thread of the provider, returns right away
+     * and the reclaim takes the write lock one short step at a time. Calls made while a reclaim
+     * is still queued are merged into it.
+     */
+    public synchronized void reclaimFreePagesLater() {
+        if (reclaimQueued) {
+            return;
+        }
+        reclaimQueued = true;
+        runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MyDbHelper.this) {
+                    reclaimQueued = false;
+                }
+                SQLiteDatabase db = acquireOpenDatabase();
+                if (db == null) {
+                    return;
+                }
+                try {
+                    reclaimFreePages(db);
+                } catch (SQLiteException e) {
+                    Log.w(LOG_TAG, "Failed to reclaim the free pages of " + getDatabaseName(), e);
+                } finally {
+                    db.releaseReference();
+                }
+            }
+        });
+    }
+
+    //Must be called holding the lock of the helper
+    private void runInBackground(Runnable task) {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadExecutor();
+        }
+        backgroundExecutor.execute(task);
+    }
+
+    /**
+     * Gives the free pages of bstore.db back to the file system after a large delete.
+     * With incremental auto-vacuum they are moved to the end of the file and truncated
+     * {@link #VACUUM_STEP_PAGES} at a time, every step a short write of its own.
+     * A file created before that mode is converted with a VACUUM, but only once most of it is
+     * free, when the VACUUM has little left to copy.
+     * Must be called outside of a transaction.
+     */
+    void reclaimFreePages(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            if (free * 2 > DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)) {
+                enableIncrementalVacuum(db);
+            }
+            return;
+        }
+        long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        while (free > 0) {
+            runPragma(db, "PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+            long left = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+            if (left >= free) {
+                //Nothing was given back, leave the rest for the next time
+                break;
+            }
+            free = left;
+        }
+    }
+
+    //Changing auto_vacuum on a file that already has tables only takes effect with a VACUUM,
+    //which rebuilds the whole file. A failure (a busy database) only leaves the mode as it was.
+    private static void enableIncrementalVacuum(SQLiteDatabase db) {
+        runPragma(db, "PRAGMA auto_vacuum=" + AUTO_VACUUM_INCREMENTAL);
+        try {
+            db.execSQL("VACUUM");
+        } catch (SQLiteException e) {
+            Log.w(LOG_TAG, "Failed to vacuum " + DATABASE_NAME, e);
+        }
+    }
+
+    //PRAGMAs that return a row can not go through execSQL(), the cursor has to be stepped
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
      * This is called when the database is created for the first time.
+     * A new database gets the base schema and then runs every migration, so fresh installs
+     * and upgraded installs end up with exactly the same schema.
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createBaseSchema(db);
+        onUpgrade(db, BASE_VERSION, DATABASE_VERSION);
+        created = true;
+    }
+
+    /**
+     * This is called when the database needs to be upgraded.
+     * Runs, in order, every migration after oldVersion up to newVersion.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrate(db, version);
+        }
+    }
+
+    //Creates the books table as it was at version 2
+    private void createBaseSchema(SQLiteDatabase db) {
         // Create a String that contains the SQL statement to create the pets table
         String SQL_CREATE_ITEM_TABLE = "CREATE TABLE " + DataEntry.TABLE_NAME + " ("
                 + DataContract.DataEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -66,10 +389,335 @@ public class MyDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * Upgrades the schema from version - 1 to version.
+     * To change the schema increment {@link #DATABASE_VERSION} and add a case here.
      */
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+    private void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 3:
+                migrateToVersion3(db);
+                break;
+            case 4:
+                migrateToVersion4(db);
+                break;
+            case 5:
+                migrateToVersion5(db);
+                break;
+            case 6:
+                migrateToVersion6(db);
+                break;
+            case 7:
+                migrateToVersion7(db);
+                break;
+            case 8:
+                migrateToVersion8(db);
+                break;
+            case 9:
+                migrateToVersion9(db);
+                break;
+            case 10:
+                migrateToVersion10(db);
+                break;
+            case 11:
+                migrateToVersion11(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Version 3: indexes for the catalog access patterns.
+     * The name index uses NOCASE so it also serves the {@link DataEntry#SORT_BY_NAME} order.
+     */
+    private void migrateToVersion3(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DataEntry.TABLE_NAME + "_name_idx ON "
+                + DataEntry.TABLE_NAME + " (" + DataEntry.COLUMN_DATA_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DataEntry.TABLE_NAME + "_supplier_idx ON "
+                + DataEntry.TABLE_NAME + " (" + DataEntry.COLUMN_DATA_SUPPLIER + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DataEntry.TABLE_NAME + "_quantity_idx ON "
+                + DataEntry.TABLE_NAME + " (" + DataEntry.COLUMN_DATA_QUANTITY + ")");
+    }
+
+    /**
+     * Version 4: external content FTS4 table over name and supplier.
+     * The triggers keep it in sync with the books table and the 'rebuild' command indexes
+     * the rows that already exist.
+     */
+    private void migrateToVersion4(SQLiteDatabase db) {
+        String books = DataEntry.TABLE_NAME;
+        String fts = DataEntry.FTS_TABLE_NAME;
+        String ftsColumns = DataEntry.COLUMN_DATA_NAME + ", " + DataEntry.COLUMN_DATA_SUPPLIER;
+        String newValues = "new." + DataEntry._ID + ", new." + DataEntry.COLUMN_DATA_NAME
+                + ", new." + DataEntry.COLUMN_DATA_SUPPLIER;
+
+        db.execSQL("CREATE VIRTUAL TABLE " + fts + " USING fts4(content=\"" + books + "\", "
+                + ftsColumns + ")");
+        db.execSQL("CREATE TRIGGER " + fts + "_bu BEFORE UPDATE ON " + books + " BEGIN "
+                + "DELETE FROM " + fts + " WHERE docid = old." + DataEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + fts + "_bd BEFORE DELETE ON " + books + " BEGIN "
+                + "DELETE FROM " + fts + " WHERE docid = old." + DataEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + fts + "_au AFTER UPDATE ON " + books + " BEGIN "
+                + "INSERT INTO " + fts + " (docid, " + ftsColumns + ") VALUES (" + newValues + "); END");
+        db.execSQL("CREATE TRIGGER " + fts + "_ai AFTER INSERT ON " + books + " BEGIN "
+                + "INSERT INTO " + fts + " (docid, " + ftsColumns + ") VALUES (" + newValues + "); END");
+        db.execSQL("INSERT INTO " + fts + " (" + fts + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Version 5: covering index for {@link DataEntry#LIST_SUMMARY_PROJECTION}.
+     * It starts with the same NOCASE name key, so it replaces the version 3 name index.
+     */
+    private void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DataEntry.TABLE_NAME + "_name_quantity_idx ON "
+                + DataEntry.TABLE_NAME + " (" + DataEntry.COLUMN_DATA_NAME + " COLLATE NOCASE, "
+                + DataEntry.COLUMN_DATA_QUANTITY + ")");
+        db.execSQL("DROP INDEX IF EXISTS " + DataEntry.TABLE_NAME + "_name_idx");
+    }
+
+    /**
+     * Version 6: progress of the CSV imports.
+     */
+    private void migrateToVersion6(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ImportEntry.TABLE_NAME + " ("
+                + ImportEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ImportEntry.COLUMN_SOURCE + " TEXT NOT NULL UNIQUE, "
+                + ImportEntry.COLUMN_RECORDS + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    /**
+     * Version 7: per supplier totals maintained by triggers on the books table.
+     * An update is applied as the removal of the old row followed by the addition of the new
+     * one, which also covers a book moving to another supplier. A supplier without books
+     * is removed.
+     */
+    private void migrateToVersion7(SQLiteDatabase db) {
+        String totals = SummaryEntry.TABLE_NAME;
+        db.execSQL("CREATE TABLE " + totals + " ("
+                + SummaryEntry.COLUMN_SUPPLIER + " TEXT PRIMARY KEY, "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " REAL NOT NULL DEFAULT 0)");
+
+        String add = "INSERT OR IGNORE INTO " + totals + " (" + SummaryEntry.COLUMN_SUPPLIER + ") VALUES (new."
+                + DataEntry.COLUMN_DATA_SUPPLIER + "); "
+                + "UPDATE " + totals + " SET "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " = " + SummaryEntry.COLUMN_BOOK_COUNT + " + 1, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = " + SummaryEntry.COLUMN_TOTAL_QUANTITY
+                + " + new." + DataEntry.COLUMN_DATA_QUANTITY + ", "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " = " + SummaryEntry.COLUMN_STOCK_VALUE
+                + " + new." + DataEntry.COLUMN_DATA_QUANTITY + " * new." + DataEntry.COLUMN_DATA_PRICE
+                + " WHERE " + SummaryEntry.COLUMN_SUPPLIER + " = new." + DataEntry.COLUMN_DATA_SUPPLIER + "; ";
+        String remove = "UPDATE " + totals + " SET "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " = " + SummaryEntry.COLUMN_BOOK_COUNT + " - 1, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = " + SummaryEntry.COLUMN_TOTAL_QUANTITY
+                + " - old." + DataEntry.COLUMN_DATA_QUANTITY + ", "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " = " + SummaryEntry.COLUMN_STOCK_VALUE
+                + " - old." + DataEntry.COLUMN_DATA_QUANTITY + " * old." + DataEntry.COLUMN_DATA_PRICE
+                + " WHERE " + SummaryEntry.COLUMN_SUPPLIER + " = old." + DataEntry.COLUMN_DATA_SUPPLIER + "; "
+                + "DELETE FROM " + totals + " WHERE " + SummaryEntry.COLUMN_SUPPLIER + " = old."
+                + DataEntry.COLUMN_DATA_SUPPLIER + " AND " + SummaryEntry.COLUMN_BOOK_COUNT + " <= 0; ";
+
+        db.execSQL("CREATE TRIGGER " + totals + "_ai AFTER INSERT ON " + DataEntry.TABLE_NAME
+                + " BEGIN " + add + "END");
+        db.execSQL("CREATE TRIGGER " + totals + "_ad AFTER DELETE ON " + DataEntry.TABLE_NAME
+                + " BEGIN " + remove + "END");
+        db.execSQL("CREATE TRIGGER " + totals + "_au AFTER UPDATE OF "
+                + DataEntry.COLUMN_DATA_QUANTITY + ", " + DataEntry.COLUMN_DATA_PRICE + ", "
+                + DataEntry.COLUMN_DATA_SUPPLIER + " ON " + DataEntry.TABLE_NAME
+                + " BEGIN " + remove + add + "END");
+
+        db.execSQL("INSERT INTO " + totals + " SELECT " + DataEntry.COLUMN_DATA_SUPPLIER + ", count(*), "
+                + "sum(" + DataEntry.COLUMN_DATA_QUANTITY + "), "
+                + "sum(" + DataEntry.COLUMN_DATA_QUANTITY + " * " + DataEntry.COLUMN_DATA_PRICE + ") FROM "
+                + DataEntry.TABLE_NAME + " GROUP BY " + DataEntry.COLUMN_DATA_SUPPLIER);
+    }
+
+    /**
+     * Version 8: suppliers table.
+     * Every distinct supplier name of the books becomes one supplier, with the phone of its
+     * most recent book, and the books table is rebuilt with a supplier_id foreign key in place
+     * of the supplier and supplier_ph text. {@link DataEntry#VIEW_NAME} joins them back.
+     * The per supplier totals move into the suppliers table and supplier_totals becomes a
+     * view of it. The FTS table can no longer read the supplier from the books table, so it
+     * keeps its own copy of the indexed text, refreshed when a supplier is renamed.
+     */
+    private void migrateToVersion8(SQLiteDatabase db) {
+        String books = DataEntry.TABLE_NAME;
+        String suppliers = SupplierEntry.TABLE_NAME;
+        String fts = DataEntry.FTS_TABLE_NAME;
+
+        db.execSQL("CREATE TABLE " + suppliers + " ("
+                + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SupplierEntry.COLUMN_NAME + " TEXT NOT NULL UNIQUE, "
+                + SupplierEntry.COLUMN_PHONE + " TEXT NOT NULL, "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " REAL NOT NULL DEFAULT 0)");
+        //The bare columns of a max() aggregate come from the row with the max _id
+        db.execSQL("INSERT INTO " + suppliers + " (" + SupplierEntry.COLUMN_NAME + ", "
+                + SupplierEntry.COLUMN_PHONE + ") SELECT " + DataEntry.COLUMN_DATA_SUPPLIER + ", "
+                + DataEntry.COLUMN_DATA_SUPPLIER_PH + " FROM (SELECT " + DataEntry.COLUMN_DATA_SUPPLIER + ", "
+                + DataEntry.COLUMN_DATA_SUPPLIER_PH + ", max(" + DataEntry._ID + ") FROM " + books
+                + " GROUP BY " + DataEntry.COLUMN_DATA_SUPPLIER + ")");
+
+        //Dropping the books table drops its indexes and triggers, the FTS and totals tables
+        //are replaced below. The AUTOINCREMENT sequence is kept so ids are never reused.
+        long sequence = DatabaseUtils.longForQuery(db,
+                "SELECT ifnull(max(seq), 0) FROM sqlite_sequence WHERE name = ?", new String[]{books});
+        db.execSQL("DROP TABLE " + fts);
+        db.execSQL("DROP TABLE " + SummaryEntry.TABLE_NAME);
+        db.execSQL("CREATE TABLE " + books + "_new ("
+                + DataEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + DataEntry.COLUMN_DATA_NAME + " TEXT NOT NULL, "
+                + DataEntry.COLUMN_DATA_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + DataEntry.COLUMN_DATA_PRICE + " REAL NOT NULL DEFAULT 0, "
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+                + suppliers + " (" + SupplierEntry._ID + "))");
+        db.execSQL("INSERT INTO " + books + "_new SELECT b." + DataEntry._ID + ", b." + DataEntry.COLUMN_DATA_NAME
+                + ", b." + DataEntry.COLUMN_DATA_QUANTITY + ", b." + DataEntry.COLUMN_DATA_PRICE
+                + ", s." + SupplierEntry._ID + " FROM " + books + " b JOIN " + suppliers + " s ON s."
+                + SupplierEntry.COLUMN_NAME + " = b." + DataEntry.COLUMN_DATA_SUPPLIER);
+        db.execSQL("DROP TABLE " + books);
+        db.execSQL("ALTER TABLE " + books + "_new RENAME TO " + books);
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = ?", new Object[]{books});
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)", new Object[]{books, sequence});
+
+        db.execSQL("CREATE INDEX " + books + "_name_quantity_idx ON " + books + " ("
+                + DataEntry.COLUMN_DATA_NAME + " COLLATE NOCASE, " + DataEntry.COLUMN_DATA_QUANTITY + ")");
+        db.execSQL("CREATE INDEX " + books + "_quantity_idx ON " + books + " ("
+                + DataEntry.COLUMN_DATA_QUANTITY + ")");
+        db.execSQL("CREATE INDEX " + books + "_supplier_idx ON " + books + " ("
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + ")");
+
+        db.execSQL("CREATE VIEW " + DataEntry.VIEW_NAME + " AS SELECT "
+                + "b." + DataEntry._ID + " AS " + DataEntry._ID + ", "
+                + "b." + DataEntry.COLUMN_DATA_NAME + " AS " + DataEntry.COLUMN_DATA_NAME + ", "
+                + "b." + DataEntry.COLUMN_DATA_QUANTITY + " AS " + DataEntry.COLUMN_DATA_QUANTITY + ", "
+                + "b." + DataEntry.COLUMN_DATA_PRICE + " AS " + DataEntry.COLUMN_DATA_PRICE + ", "
+                + "b." + DataEntry.COLUMN_DATA_SUPPLIER_ID + " AS " + DataEntry.COLUMN_DATA_SUPPLIER_ID + ", "
+                + "s." + SupplierEntry.COLUMN_NAME + " AS " + DataEntry.COLUMN_DATA_SUPPLIER + ", "
+                + "s." + SupplierEntry.COLUMN_PHONE + " AS " + DataEntry.COLUMN_DATA_SUPPLIER_PH
+                + " FROM " + books + " b JOIN " + suppliers + " s ON s." + SupplierEntry._ID
+                + " = b." + DataEntry.COLUMN_DATA_SUPPLIER_ID);
+
+        String ftsColumns = DataEntry.COLUMN_DATA_NAME + ", " + DataEntry.COLUMN_DATA_SUPPLIER;
+        String ftsInsert = "INSERT INTO " + fts + " (docid, " + ftsColumns + ") SELECT new." + DataEntry._ID
+                + ", new." + DataEntry.COLUMN_DATA_NAME + ", " + SupplierEntry.COLUMN_NAME + " FROM "
+                + suppliers + " WHERE " + SupplierEntry._ID + " = new." + DataEntry.COLUMN_DATA_SUPPLIER_ID + "; ";
+        String ftsDelete = "DELETE FROM " + fts + " WHERE docid = old." + DataEntry._ID + "; ";
+        db.execSQL("CREATE VIRTUAL TABLE " + fts + " USING fts4(" + ftsColumns + ")");
+        db.execSQL("CREATE TRIGGER " + fts + "_ai AFTER INSERT ON " + books + " BEGIN " + ftsInsert + "END");
+        db.execSQL("CREATE TRIGGER " + fts + "_ad AFTER DELETE ON " + books + " BEGIN " + ftsDelete + "END");
+        db.execSQL("CREATE TRIGGER " + fts + "_au AFTER UPDATE OF " + DataEntry.COLUMN_DATA_NAME + ", "
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + " ON " + books + " BEGIN " + ftsDelete + ftsInsert + "END");
+        db.execSQL("CREATE TRIGGER " + suppliers + "_fts_au AFTER UPDATE OF " + SupplierEntry.COLUMN_NAME
+                + " ON " + suppliers + " BEGIN UPDATE " + fts + " SET " + DataEntry.COLUMN_DATA_SUPPLIER
+                + " = new." + SupplierEntry.COLUMN_NAME + " WHERE docid IN (SELECT " + DataEntry._ID + " FROM "
+                + books + " WHERE " + DataEntry.COLUMN_DATA_SUPPLIER_ID + " = new." + SupplierEntry._ID + "); END");
+        db.execSQL("INSERT INTO " + fts + " (docid, " + ftsColumns + ") SELECT " + DataEntry._ID + ", "
+                + ftsColumns + " FROM " + DataEntry.VIEW_NAME);
+
+        String add = "UPDATE " + suppliers + " SET "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " = " + SummaryEntry.COLUMN_BOOK_COUNT + " + 1, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = " + SummaryEntry.COLUMN_TOTAL_QUANTITY
+                + " + new." + DataEntry.COLUMN_DATA_QUANTITY + ", "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " = " + SummaryEntry.COLUMN_STOCK_VALUE
+                + " + new." + DataEntry.COLUMN_DATA_QUANTITY + " * new." + DataEntry.COLUMN_DATA_PRICE
+                + " WHERE " + SupplierEntry._ID + " = new." + DataEntry.COLUMN_DATA_SUPPLIER_ID + "; ";
+        String remove = "UPDATE " + suppliers + " SET "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " = " + SummaryEntry.COLUMN_BOOK_COUNT + " - 1, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = " + SummaryEntry.COLUMN_TOTAL_QUANTITY
+                + " - old." + DataEntry.COLUMN_DATA_QUANTITY + ", "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " = " + SummaryEntry.COLUMN_STOCK_VALUE
+                + " - old." + DataEntry.COLUMN_DATA_QUANTITY + " * old." + DataEntry.COLUMN_DATA_PRICE
+                + " WHERE " + SupplierEntry._ID + " = old." + DataEntry.COLUMN_DATA_SUPPLIER_ID + "; ";
+        db.execSQL("CREATE TRIGGER " + books + "_totals_ai AFTER INSERT ON " + books
+                + " BEGIN " + add + "END");
+        db.execSQL("CREATE TRIGGER " + books + "_totals_ad AFTER DELETE ON " + books
+                + " BEGIN " + remove + "END");
+        db.execSQL("CREATE TRIGGER " + books + "_totals_au AFTER UPDATE OF "
+                + DataEntry.COLUMN_DATA_QUANTITY + ", " + DataEntry.COLUMN_DATA_PRICE + ", "
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + " ON " + books
+                + " BEGIN " + remove + add + "END");
+        db.execSQL("UPDATE " + suppliers + " SET "
+                + SummaryEntry.COLUMN_BOOK_COUNT + " = (SELECT count(*) FROM " + books + " WHERE "
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + " = " + suppliers + "." + SupplierEntry._ID + "), "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = (SELECT ifnull(sum(" + DataEntry.COLUMN_DATA_QUANTITY
+                + "), 0) FROM " + books + " WHERE " + DataEntry.COLUMN_DATA_SUPPLIER_ID + " = "
+                + suppliers + "." + SupplierEntry._ID + "), "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " = (SELECT ifnull(sum(" + DataEntry.COLUMN_DATA_QUANTITY
+                + " * " + DataEntry.COLUMN_DATA_PRICE + "), 0) FROM " + books + " WHERE "
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + " = " + suppliers + "." + SupplierEntry._ID + ")");
+        db.execSQL("CREATE VIEW " + SummaryEntry.TABLE_NAME + " AS SELECT "
+                + SupplierEntry.COLUMN_NAME + " AS " + SummaryEntry.COLUMN_SUPPLIER + ", "
+                + SummaryEntry.COLUMN_BOOK_COUNT + ", " + SummaryEntry.COLUMN_TOTAL_QUANTITY + ", "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " FROM " + suppliers
+                + " WHERE " + SummaryEntry.COLUMN_BOOK_COUNT + " > 0");
+    }
+
+    /**
+     * Version 9: ISBN column with a unique index. Books without an ISBN keep it null, which
+     * the unique index allows any number of times.
+     * The books view is recreated with b.*, which SQLite expands when the schema is loaded,
+     * so it will follow new columns of the books table without being recreated again.
+     */
+    private void migrateToVersion9(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + DataEntry.TABLE_NAME + " ADD COLUMN " + DataEntry.COLUMN_DATA_ISBN + " TEXT");
+        db.execSQL("CREATE UNIQUE INDEX " + DataEntry.TABLE_NAME + "_isbn_idx ON " + DataEntry.TABLE_NAME
+                + " (" + DataEntry.COLUMN_DATA_ISBN + ")");
+        db.execSQL("DROP VIEW " + DataEntry.VIEW_NAME);
+        db.execSQL("CREATE VIEW " + DataEntry.VIEW_NAME + " AS SELECT b.*, "
+                + "s." + SupplierEntry.COLUMN_NAME + " AS " + DataEntry.COLUMN_DATA_SUPPLIER + ", "
+                + "s." + SupplierEntry.COLUMN_PHONE + " AS " + DataEntry.COLUMN_DATA_SUPPLIER_PH
+                + " FROM " + DataEntry.TABLE_NAME + " b JOIN " + SupplierEntry.TABLE_NAME + " s ON s."
+                + SupplierEntry._ID + " = b." + DataEntry.COLUMN_DATA_SUPPLIER_ID);
+    }
+
+    /**
+     * Version 10: change log of the books for the delta sync.
+     * The version is the AUTOINCREMENT key, so it only grows, even after the log is pruned.
+     * A change of the name or phone of a supplier is a change of all of its books.
+     * Every existing book gets a first entry, so a sync from version 0 gets the whole catalog.
+     */
+    private void migrateToVersion10(SQLiteDatabase db) {
+        String changes = ChangeEntry.TABLE_NAME;
+        String books = DataEntry.TABLE_NAME;
+        db.execSQL("CREATE TABLE " + changes + " ("
+                + ChangeEntry.COLUMN_VERSION + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ChangeEntry.COLUMN_BOOK_ID + " INTEGER NOT NULL)");
+
+        String log = "INSERT INTO " + changes + " (" + ChangeEntry.COLUMN_BOOK_ID + ") VALUES ";
+        db.execSQL("CREATE TRIGGER " + changes + "_ai AFTER INSERT ON " + books + " BEGIN "
+                + log + "(new." + DataEntry._ID + "); END");
+        db.execSQL("CREATE TRIGGER " + changes + "_au AFTER UPDATE ON " + books + " BEGIN "
+                + log + "(new." + DataEntry._ID + "); END");
+        db.execSQL("CREATE TRIGGER " + changes + "_ad AFTER DELETE ON " + books + " BEGIN "
+                + log + "(old." + DataEntry._ID + "); END");
+        db.execSQL("CREATE TRIGGER " + changes + "_supplier_au AFTER UPDATE OF "
+                + SupplierEntry.COLUMN_NAME + ", " + SupplierEntry.COLUMN_PHONE + " ON " + SupplierEntry.TABLE_NAME
+                + " BEGIN INSERT INTO " + changes + " (" + ChangeEntry.COLUMN_BOOK_ID + ") SELECT "
+                + DataEntry._ID + " FROM " + books + " WHERE " + DataEntry.COLUMN_DATA_SUPPLIER_ID
+                + " = new." + SupplierEntry._ID + "; END");
+
+        db.execSQL("INSERT INTO " + changes + " (" + ChangeEntry.COLUMN_BOOK_ID + ") SELECT "
+                + DataEntry._ID + " FROM " + books + " ORDER BY " + DataEntry._ID);
+    }
+
+    /**
+     * Version 11: composite indexes for the {@link DataEntry.BookFilter} queries.
+     * The supplier index gets the price and the quantity, so a supplier filter also ranges and
+     * sorts on the price and checks the stock inside the index. It still starts with the
+     * supplier, so it keeps serving the foreign key and the totals triggers in place of the
+     * version 8 index. The price index serves the price filters and sorts without a supplier.
+     */
+    private void migrateToVersion11(SQLiteDatabase db) {
+        String books = DataEntry.TABLE_NAME;
+        db.execSQL("CREATE INDEX " + books + "_supplier_price_idx ON " + books + " ("
+                + DataEntry.COLUMN_DATA_SUPPLIER_ID + ", " + DataEntry.COLUMN_DATA_PRICE + ", "
+                + DataEntry.COLUMN_DATA_QUANTITY + ")");
+        db.execSQL("DROP INDEX " + books + "_supplier_idx");
+        db.execSQL("CREATE INDEX " + books + "_price_quantity_idx ON " + books + " ("
+                + DataEntry.COLUMN_DATA_PRICE + ", " + DataEntry.COLUMN_DATA_QUANTITY + ")");
     }
-}
\ No newline at end of file
+}
@@ -5,17 +5,51 @@ package me.theofrancisco.android.bookstore.data;
  */
 //Is this class where all data changes for the database are triggered.
 
+import android.content.ClipDescription;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.pm.ProviderInfo;
+import android.content.res.AssetFileDescriptor;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.ParcelFileDescriptor;
+import android.os.StrictMode;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static me.theofrancisco.android.bookstore.data.DataContract.ChangeEntry;
 import static me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import static me.theofrancisco.android.bookstore.data.DataContract.ImportEntry;
+import static me.theofrancisco.android.bookstore.data.DataContract.SummaryEntry;
+import static me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
 import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
     /*
     USE URI MATCHER IN CONTENT PROVIDER
@@ -42,6 +76,45 @@ public class MyProvider extends ContentProvider {
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
     private static final int BOOKS = 100;
     private static final int BOOK_ID = 101;
+    private static final int BOOK_SEARCH = 102;
+    private static final int IMPORTS = 103;
+    private static final int BOOK_EXPORT = 104;
+    private static final int BOOK_SUMMARY = 105;
+    private static final int SUPPLIER_SUMMARY = 106;
+    private static final int SUPPLIERS = 107;
+    private static final int SUPPLIER_ID = 108;
+    private static final int SUPPLIER_BOOKS = 109;
+    private static final int BOOK_ISBN = 110;
+    private static final int BOOK_CHANGES = 111;
+
+    //Formats of the books export
+    private static final String[] EXPORT_MIME_TYPES = {DataEntry.MIME_TYPE_CSV, DataEntry.MIME_TYPE_JSON};
+
+    //Number of rows inserted by bulkInsert() before giving other threads a chance
+    //to take the database lock
+    private static final int BULK_YIELD_ROWS = 500;
+
+    //Number of books removed by every statement of a delete on the books URI
+    private static final int DELETE_CHUNK_ROWS = 500;
+
+    //Adds a delta to the quantity of a book unless the result would be negative,
+    //bound as (delta, _id, delta)
+    private static final String ADJUST_STOCK_SQL = "UPDATE " + DataEntry.TABLE_NAME + " SET "
+            + DataEntry.COLUMN_DATA_QUANTITY + " = " + DataEntry.COLUMN_DATA_QUANTITY + " + ? WHERE "
+            + DataEntry._ID + " = ? AND " + DataEntry.COLUMN_DATA_QUANTITY + " + ? >= 0";
+    //The same, only applied while the quantity is still the expected one,
+    //bound as (delta, _id, delta, expected)
+    private static final String ADJUST_STOCK_EXPECTED_SQL = ADJUST_STOCK_SQL + " AND "
+            + DataEntry.COLUMN_DATA_QUANTITY + " = ?";
+
+    //Columns written by the precompiled bulk insert statement, in binding order.
+    //The ISBN goes last: the upsert UPDATE sets the others WHERE isbn = the last one.
+    private static final String[] BULK_COLUMNS = {
+            DataEntry.COLUMN_DATA_NAME,
+            DataEntry.COLUMN_DATA_QUANTITY,
+            DataEntry.COLUMN_DATA_PRICE,
+            DataEntry.COLUMN_DATA_SUPPLIER_ID,
+            DataEntry.COLUMN_DATA_ISBN};
 
     //static code to setup
     static {
@@ -60,10 +133,119 @@ public class MyProvider extends ContentProvider {
              */
         uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_BOOKS, BOOKS);
         uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_BOOKS + "/#", BOOK_ID);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_BOOKS + "/" + DataContract.PATH_SEARCH + "/*", BOOK_SEARCH);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_IMPORTS, IMPORTS);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_BOOKS + "/" + DataContract.PATH_EXPORT, BOOK_EXPORT);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_BOOKS + "/" + DataContract.PATH_SUMMARY, BOOK_SUMMARY);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_BOOKS + "/"
+                + DataContract.PATH_SUMMARY + "/" + DataContract.PATH_SUPPLIERS, SUPPLIER_SUMMARY);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_SUPPLIERS, SUPPLIERS);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY, DataContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_SUPPLIERS + "/#/" + DataContract.PATH_BOOKS, SUPPLIER_BOOKS);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_BOOKS + "/" + DataContract.PATH_ISBN + "/*", BOOK_ISBN);
+        uriMatcher.addURI(DataContract.CONTENT_AUTHORITY,
+                DataContract.PATH_BOOKS + "/" + DataContract.PATH_CHANGES, BOOK_CHANGES);
+    }
+
+    //All the columns of a book, the books table joined with its supplier
+    private static final String[] BOOK_COLUMNS = {
+            DataEntry._ID,
+            DataEntry.COLUMN_DATA_NAME,
+            DataEntry.COLUMN_DATA_QUANTITY,
+            DataEntry.COLUMN_DATA_PRICE,
+            DataEntry.COLUMN_DATA_SUPPLIER_ID,
+            DataEntry.COLUMN_DATA_ISBN,
+            DataEntry.COLUMN_DATA_SUPPLIER,
+            DataEntry.COLUMN_DATA_SUPPLIER_PH};
+
+    //The columns stored in the books table itself
+    private static final Set<String> BOOK_TABLE_COLUMNS = new HashSet<>(Arrays.asList(
+            DataEntry._ID,
+            DataEntry.COLUMN_DATA_NAME,
+            DataEntry.COLUMN_DATA_QUANTITY,
+            DataEntry.COLUMN_DATA_PRICE,
+            DataEntry.COLUMN_DATA_SUPPLIER_ID,
+            DataEntry.COLUMN_DATA_ISBN));
+
+    //The search joins books with the FTS table, which also has name and supplier columns,
+    //so every column of the result is qualified with the books view.
+    private static final Map<String, String> searchProjectionMap = new HashMap<>();
+
+    //The delta sync returns the book columns, with the book id of the change as _id so
+    //tombstones have it too, its last version and whether the book is deleted.
+    private static final Map<String, String> changesProjectionMap = new LinkedHashMap<>();
+
+    //The suppliers table also holds the totals of SummaryEntry, only these columns are exposed
+    private static final Map<String, String> supplierProjectionMap = new HashMap<>();
+
+    static {
+        for (String column : BOOK_COLUMNS) {
+            searchProjectionMap.put(column, DataEntry.VIEW_NAME + "." + column + " AS " + column);
+        }
+        changesProjectionMap.put(ChangeEntry.COLUMN_VERSION, "c." + ChangeEntry.COLUMN_VERSION
+                + " AS " + ChangeEntry.COLUMN_VERSION);
+        changesProjectionMap.put(ChangeEntry.COLUMN_DELETED, "b." + DataEntry._ID + " IS NULL AS "
+                + ChangeEntry.COLUMN_DELETED);
+        for (String column : BOOK_COLUMNS) {
+            if (BOOK_TABLE_COLUMNS.contains(column)) {
+                changesProjectionMap.put(column, "b." + column + " AS " + column);
+            }
+        }
+        changesProjectionMap.put(DataEntry._ID, "c." + ChangeEntry.COLUMN_BOOK_ID + " AS " + DataEntry._ID);
+        changesProjectionMap.put(DataEntry.COLUMN_DATA_SUPPLIER, "s." + SupplierEntry.COLUMN_NAME
+                + " AS " + DataEntry.COLUMN_DATA_SUPPLIER);
+        changesProjectionMap.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "s." + SupplierEntry.COLUMN_PHONE
+                + " AS " + DataEntry.COLUMN_DATA_SUPPLIER_PH);
+        supplierProjectionMap.put(SupplierEntry._ID, SupplierEntry._ID);
+        supplierProjectionMap.put(SupplierEntry.COLUMN_NAME, SupplierEntry.COLUMN_NAME);
+        supplierProjectionMap.put(SupplierEntry.COLUMN_PHONE, SupplierEntry.COLUMN_PHONE);
     }
 
     private MyDbHelper myDbHelper;
 
+    //Name of the provider <meta-data> with the notification debounce window in milliseconds
+    private static final String META_NOTIFY_DEBOUNCE_MS = "notify_debounce_ms";
+    private static final int DEFAULT_NOTIFY_DEBOUNCE_MS = 100;
+    //Name of the provider <meta-data> with the longest time a burst of notifications is held back
+    private static final String META_NOTIFY_MAX_WAIT_MS = "notify_max_wait_ms";
+    private static final int DEFAULT_NOTIFY_MAX_WAIT_MS = 1000;
+
+    private long notifyDebounceMillis = DEFAULT_NOTIFY_DEBOUNCE_MS;
+    private long notifyMaxWaitMillis = DEFAULT_NOTIFY_MAX_WAIT_MS;
+
+    //Name of the provider <meta-data> with the WAL checkpoint mode: automatic, periodic or manual
+    private static final String META_CHECKPOINT_MODE = "checkpoint_mode";
+
+    private int checkpointMode = MyDbHelper.CHECKPOINT_AUTOMATIC;
+    //Package-private for the tests, they replace it with one on the test looper
+    ChangeNotifier changeNotifier;
+
+    //Latency and row metrics, the slot of a URI match is its code - BOOKS
+    private final ProviderMetrics metrics = new ProviderMetrics(new String[]{
+            "BOOKS", "BOOK_ID", "BOOK_SEARCH", "IMPORTS", "BOOK_EXPORT", "BOOK_SUMMARY",
+            "SUPPLIER_SUMMARY", "SUPPLIERS", "SUPPLIER_ID", "SUPPLIER_BOOKS", "BOOK_ISBN", "BOOK_CHANGES"});
+
+    //URIs changed by the applyBatch() running on the current binder thread.
+    //While a batch is running notifications are collected here and sent after the commit.
+    private final ThreadLocal<Set<Uri>> pendingNotifications = new ThreadLocal<>();
+
+    //Number of books kept by the BOOK_ID row cache
+    private static final int ROW_CACHE_SIZE = 256;
+    //Marks a batch that invalidated the whole row cache
+    private static final long ALL_ROWS = Long.MIN_VALUE;
+
+    //Last rows read through BOOK_ID, so reopening a book does not touch SQLite
+    private final BookRowCache rowCache = new BookRowCache(BOOK_COLUMNS, ROW_CACHE_SIZE);
+
+    //Ids invalidated by the applyBatch() running on the current binder thread. Until the batch
+    //commits other connections still read the old rows, so they are invalidated again after it.
+    private final ThreadLocal<Set<Long>> pendingInvalidations = new ThreadLocal<>();
+
     // Tag for the log messages
     //public static final String LOG_TAG = MyProvider.class.getSimpleName();
     //public static final String LOG_TAG = "MyApp";
@@ -73,44 +255,312 @@ public class MyProvider extends ContentProvider {
      */
     @Override
     public boolean onCreate() {
-        myDbHelper = new MyDbHelper(getContext());
+        myDbHelper = new MyDbHelper(getContext(), checkpointMode);
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver(), notifyDebounceMillis,
+                notifyMaxWaitMillis);
         return true;
     }
 
+    /**
+     * Reads the configuration of the provider from its manifest meta-data before onCreate().
+     */
+    @Override
+    public void attachInfo(Context context, ProviderInfo info) {
+        if (info != null && info.metaData != null) {
+            notifyDebounceMillis = info.metaData.getInt(META_NOTIFY_DEBOUNCE_MS, DEFAULT_NOTIFY_DEBOUNCE_MS);
+            notifyMaxWaitMillis = info.metaData.getInt(META_NOTIFY_MAX_WAIT_MS, DEFAULT_NOTIFY_MAX_WAIT_MS);
+            String mode = info.metaData.getString(META_CHECKPOINT_MODE);
+            if (mode != null) {
+                checkpointMode = MyDbHelper.parseCheckpointMode(mode);
+            }
+        }
+        super.attachInfo(context, info);
+    }
+
+    /**
+     * Once the UI of the app is hidden nothing is waiting for the database, in the manual
+     * checkpoint mode the write-ahead log is copied back then.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            myDbHelper.checkpointIfManual();
+        }
+    }
+
+    /**
+     * Sends the pending notifications and closes the database, for the tests. The next call
+     * of the provider opens the database again, its changes are notified at once.
+     */
+    @Override
+    public void shutdown() {
+        changeNotifier.shutdown();
+        myDbHelper.close();
+    }
+
+    /*
+     * The ContentProvider entry points only measure the call and delegate to the perform
+     * methods below, see {@link ProviderMetrics}.
+     * The writes note themselves as slow calls: a StrictMode policy with
+     * detectCustomSlowCalls() reports a write made on the main thread, where the app should
+     * have gone through BookWriteQueue.
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * The list queries run with the cancellation signal of the caller, so a query that is no
+     * longer wanted (a search the user has typed past) is interrupted inside SQLite and
+     * throws {@link OperationCanceledException}.
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = 0;
+        try {
+            Cursor cursor = performQuery(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+            //getCount() runs the query, so the time includes filling the first window.
+            //It can be canceled too, then the cursor never reaches the caller
+            try {
+                rows = cursor.getCount();
+            } catch (OperationCanceledException e) {
+                cursor.close();
+                throw e;
+            }
+            return cursor;
+        } finally {
+            record(ProviderMetrics.OPERATION_QUERY, uri, start, rows);
+        }
+    }
+
+    @Override
+    public Uri insert(@NonNull Uri uri, ContentValues contentValues) {
+        StrictMode.noteSlowCall("MyProvider.insert");
+        long start = SystemClock.elapsedRealtimeNanos();
+        Uri itemUri = null;
+        try {
+            itemUri = performInsert(uri, contentValues);
+            return itemUri;
+        } finally {
+            record(ProviderMetrics.OPERATION_INSERT, uri, start, itemUri == null ? 0 : 1);
+        }
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        StrictMode.noteSlowCall("MyProvider.bulkInsert");
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = 0;
+        try {
+            rows = performBulkInsert(uri, values);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_INSERT, uri, start, rows);
+        }
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
+        StrictMode.noteSlowCall("MyProvider.update");
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = 0;
+        try {
+            rows = performUpdate(uri, contentValues, selection, selectionArgs);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_UPDATE, uri, start, rows);
+        }
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        StrictMode.noteSlowCall("MyProvider.delete");
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = 0;
+        try {
+            rows = performDelete(uri, selection, selectionArgs);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_DELETE, uri, start, rows);
+        }
+    }
+
+    private void record(int operation, Uri uri, long start, int rows) {
+        metrics.record(operation, uriMatcher.match(uri) - BOOKS,
+                SystemClock.elapsedRealtimeNanos() - start, rows, uri);
+    }
+
+    /**
+     * Provider specific methods, called with ContentResolver.call():
+     * {@link DataContract#METHOD_GET_METRICS} returns the {@link ProviderMetrics} snapshot plus
+     * the row cache counters, so the numbers can be collected without a profiler.
+     * {@link DataEntry#METHOD_ADJUST_STOCK} adds deltas to the quantity of books.
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        switch (method) {
+            case DataContract.METHOD_GET_METRICS:
+                Bundle bundle = metrics.toBundle();
+                bundle.putInt("row_cache.hits", rowCache.hitCount());
+                bundle.putInt("row_cache.misses", rowCache.missCount());
+                return bundle;
+            case DataEntry.METHOD_ADJUST_STOCK:
+                StrictMode.noteSlowCall("MyProvider.adjustStock");
+                long start = SystemClock.elapsedRealtimeNanos();
+                int rows = 0;
+                try {
+                    boolean[] adjusted = adjustStock(extras);
+                    for (boolean applied : adjusted) {
+                        rows += applied ? 1 : 0;
+                    }
+                    Bundle result = new Bundle();
+                    result.putBooleanArray(DataEntry.EXTRA_ADJUSTED, adjusted);
+                    return result;
+                } finally {
+                    record(ProviderMetrics.OPERATION_UPDATE, DataEntry.CONTENT_URI, start, rows);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown method " + method);
+        }
+    }
+
+    /**
+     * Applies the (id, delta) pairs of a {@link DataEntry#METHOD_ADJUST_STOCK} call with one
+     * compiled statement in one transaction. The quantity check is part of the UPDATE, so
+     * nothing is read before the write and no lock is held between a read and a write.
+     * Pairs are independent, so the transaction yields like a bulk insert does.
+     */
+    private boolean[] adjustStock(Bundle extras) {
+        long[] ids = extras == null ? null : extras.getLongArray(DataEntry.EXTRA_BOOK_IDS);
+        int[] deltas = extras == null ? null : extras.getIntArray(DataEntry.EXTRA_DELTAS);
+        int[] expected = extras == null ? null : extras.getIntArray(DataEntry.EXTRA_EXPECTED_QUANTITIES);
+        if (ids == null || deltas == null || ids.length != deltas.length
+                || (expected != null && expected.length != ids.length)) {
+            throw new IllegalArgumentException("Stock adjustment requires as many book ids as deltas");
+        }
+        boolean[] adjusted = new boolean[ids.length];
+        SQLiteDatabase database = myDbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            SQLiteStatement statement = database.compileStatement(
+                    expected != null ? ADJUST_STOCK_EXPECTED_SQL : ADJUST_STOCK_SQL);
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    statement.bindLong(1, deltas[i]);
+                    statement.bindLong(2, ids[i]);
+                    statement.bindLong(3, deltas[i]);
+                    if (expected != null) {
+                        statement.bindLong(4, expected[i]);
+                    }
+                    adjusted[i] = statement.executeUpdateDelete() == 1;
+                    if ((i + 1) % BULK_YIELD_ROWS == 0) {
+                        database.yieldIfContendedSafely();
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            if (adjusted[i]) {
+                invalidateRow(ids[i]);
+                notifyChange(ContentUris.withAppendedId(DataEntry.CONTENT_URI, ids[i]));
+            }
+        }
+        return adjusted;
+    }
+
     /**
      * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
      * 1-Get the Database Object
      * 2-URIMatcher
      * 3-Pets case | PET _ID case
+     * The single row lookups are not worth canceling, the other queries get cancellationSignal.
      */
-    @Override
-    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
-                        String sortOrder) {
+    private Cursor performQuery(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                String sortOrder, CancellationSignal cancellationSignal) {
         SQLiteDatabase sqLiteDatabase = myDbHelper.getReadableDatabase();
         Cursor cursor;
 
         int match = uriMatcher.match(uri);
         switch (match) {
             case BOOKS:
-                //Perform database query on pets table
-                cursor = sqLiteDatabase.query(DataContract.DataEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                cursor = queryBooks(sqLiteDatabase, uri, projection, selection, selectionArgs, sortOrder,
+                        cancellationSignal);
                 break;
             case BOOK_ID:
-                selection = DataContract.DataEntry._ID + "=?";
-                //array of strings to be substituted wherever there was question mark
-                //up in the selection String
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                cursor = sqLiteDatabase.query(DataContract.DataEntry.TABLE_NAME,
-                        projection,
-                        selection,
-                        selectionArgs,
-                        null,
-                        null, sortOrder);
+                cursor = queryBook(sqLiteDatabase, ContentUris.parseId(uri), projection);
                 //Example imputs to query() method
                 //URI: content://com.example.android.pets/pets/5
                 //Projection: {"_id","name}
                 //== SELECT id, name FROM pets WHERE _id=5
                 break;
+            case BOOK_SEARCH:
+                cursor = search(sqLiteDatabase, uri.getLastPathSegment(), projection, selection,
+                        selectionArgs, sortOrder, cancellationSignal);
+                break;
+            case BOOK_ISBN:
+                //One probe of the unique ISBN index
+                String isbn = DataEntry.normalizeIsbn(uri.getLastPathSegment());
+                if (isbn == null) {
+                    throw new IllegalArgumentException("Not an ISBN in " + uri);
+                }
+                cursor = sqLiteDatabase.query(DataEntry.VIEW_NAME, projection, DataEntry.COLUMN_DATA_ISBN + "=?",
+                        new String[]{isbn}, null, null, null);
+                break;
+            case IMPORTS:
+                cursor = sqLiteDatabase.query(false, ImportEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
+                break;
+            case BOOK_SUMMARY:
+                //One row adding up the suppliers
+                cursor = sqLiteDatabase.rawQuery("SELECT "
+                        + "ifnull(sum(" + SummaryEntry.COLUMN_BOOK_COUNT + "), 0) AS " + SummaryEntry.COLUMN_BOOK_COUNT + ", "
+                        + "ifnull(sum(" + SummaryEntry.COLUMN_TOTAL_QUANTITY + "), 0) AS " + SummaryEntry.COLUMN_TOTAL_QUANTITY + ", "
+                        + "ifnull(sum(" + SummaryEntry.COLUMN_STOCK_VALUE + "), 0) AS " + SummaryEntry.COLUMN_STOCK_VALUE
+                        + " FROM " + SummaryEntry.TABLE_NAME, null, cancellationSignal);
+                break;
+            case SUPPLIER_SUMMARY:
+                cursor = sqLiteDatabase.query(false, SummaryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
+                break;
+            case BOOK_CHANGES:
+                cursor = queryChanges(sqLiteDatabase, uri, projection, selection, selectionArgs, sortOrder,
+                        cancellationSignal);
+                break;
+            case SUPPLIERS:
+            case SUPPLIER_ID:
+                SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+                builder.setTables(SupplierEntry.TABLE_NAME);
+                builder.setProjectionMap(supplierProjectionMap);
+                if (match == SUPPLIER_ID) {
+                    builder.appendWhere(SupplierEntry._ID + " = " + ContentUris.parseId(uri));
+                }
+                cursor = builder.query(sqLiteDatabase, projection, selection, selectionArgs, null, null,
+                        sortOrder, null, cancellationSignal);
+                break;
+            case SUPPLIER_BOOKS:
+                //suppliers/<id>/books, the id is the second segment
+                long supplierId;
+                try {
+                    supplierId = Long.parseLong(uri.getPathSegments().get(1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Unknown URI " + uri);
+                }
+                String supplierSelection = DataEntry.COLUMN_DATA_SUPPLIER_ID + " = " + supplierId;
+                cursor = sqLiteDatabase.query(false, DataEntry.VIEW_NAME, projection,
+                        selection == null ? supplierSelection : supplierSelection + " AND (" + selection + ")",
+                        selectionArgs, null, null, sortOrder, null, cancellationSignal);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -119,10 +569,344 @@ public class MyProvider extends ContentProvider {
         //so we know what content URI the Cursor was created for.
         //If the data at this URI changes, then we know we need to update the Cursor
         //tutorial:https://www.grokkingandroid.com/android-tutorial-writing-your-own-content-provider/
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        //The cursor observes the descendants of the URI too, so a list cursor on books is told
+        //about books/42, while a cursor on books/7 is not. The search results and the totals
+        //depend on any book, so they observe the whole books URI.
+        boolean anyBook = match == BOOK_SEARCH || match == BOOK_SUMMARY || match == SUPPLIER_SUMMARY
+                || match == SUPPLIER_BOOKS || match == BOOK_ISBN || match == BOOK_CHANGES;
+        cursor.setNotificationUri(getContext().getContentResolver(), anyBook ? DataEntry.CONTENT_URI : uri);
+        return cursor;
+    }
+
+    /**
+     * Delta sync: every book with a change after the since version, once, at its last version.
+     * The range of the log after since is read through its primary key and grouped by book, so
+     * the cost follows the number of changes, not the size of the catalog. The books and their
+     * suppliers are then found by primary key; they are joined directly, a LEFT JOIN on the
+     * books view would materialize the whole view. Deleted books are not in the books table
+     * any more and come back as tombstones.
+     */
+    private Cursor queryChanges(SQLiteDatabase database, Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal) {
+        long since;
+        try {
+            String parameter = uri.getQueryParameter(ChangeEntry.QUERY_PARAMETER_SINCE);
+            since = parameter == null ? 0 : Long.parseLong(parameter);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid version for " + uri);
+        }
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables("(SELECT " + ChangeEntry.COLUMN_BOOK_ID + ", max(" + ChangeEntry.COLUMN_VERSION
+                + ") AS " + ChangeEntry.COLUMN_VERSION + " FROM " + ChangeEntry.TABLE_NAME + " WHERE "
+                + ChangeEntry.COLUMN_VERSION + " > " + since + " GROUP BY " + ChangeEntry.COLUMN_BOOK_ID
+                + ") c LEFT JOIN " + DataEntry.TABLE_NAME + " b ON b." + DataEntry._ID + " = c."
+                + ChangeEntry.COLUMN_BOOK_ID + " LEFT JOIN " + SupplierEntry.TABLE_NAME + " s ON s."
+                + SupplierEntry._ID + " = b." + DataEntry.COLUMN_DATA_SUPPLIER_ID);
+        builder.setProjectionMap(changesProjectionMap);
+        return builder.query(database, projection, selection, selectionArgs, null, null,
+                sortOrder == null ? ChangeEntry.COLUMN_VERSION : sortOrder, null, cancellationSignal);
+    }
+
+    /**
+     * Single book lookup. The row comes from {@link #rowCache} when it is there, otherwise
+     * the whole row is read, cached and then reduced to the projection.
+     */
+    private Cursor queryBook(SQLiteDatabase database, long id, String[] projection) {
+        Cursor cursor = rowCache.query(id, projection);
+        if (cursor != null) {
+            return cursor;
+        }
+        String selection = DataContract.DataEntry._ID + "=?";
+        //array of strings to be substituted wherever there was question mark
+        //up in the selection String
+        String[] selectionArgs = new String[]{String.valueOf(id)};
+        long readGeneration = rowCache.generation();
+        Cursor row = database.query(DataEntry.VIEW_NAME, BOOK_COLUMNS, selection, selectionArgs,
+                null, null, null);
+        try {
+            if (row.moveToFirst()) {
+                rowCache.put(id, row, readGeneration);
+            }
+        } finally {
+            row.close();
+        }
+        cursor = rowCache.query(id, projection);
+        if (cursor == null) {
+            //Not a plain column projection, or the row does not exist (or just changed)
+            cursor = database.query(DataEntry.VIEW_NAME,
+                    projection,
+                    selection,
+                    selectionArgs,
+                    null,
+                    null, null);
+        }
         return cursor;
     }
 
+    /**
+     * Books list, a keyset page of it when the URI has a limit, see {@link BooksQuery}.
+     */
+    private Cursor queryBooks(SQLiteDatabase database, Uri uri, String[] projection, String selection,
+                              String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal) {
+        BooksQuery query = new BooksQuery(uri, projection, selection, selectionArgs, sortOrder);
+        return database.rawQuery(query.sql, query.args, cancellationSignal);
+    }
+
+    /**
+     * SQL of a BOOKS query. A name prefix is a range of the name index: name >= prefix AND
+     * name < the first string after the prefix, both in NOCASE order, so the index is searched
+     * instead of scanned like it would be for LIKE. The {@link DataEntry.BookFilter}
+     * parameters are added to the selection too.
+     * <p>
+     * When the URI has a limit the query is a keyset page: at most limit rows after
+     * (after_name, after_id) in name (NOCASE), _id order. The name index is walked from the
+     * position of the previous page, so every page costs the same no matter how deep it is.
+     * The caller selection is kept and the sort order is always the page order.
+     * <p>
+     * Package-private so the tests can check the plan of the statement the provider runs.
+     */
+    static final class BooksQuery {
+        final String sql;
+        final String[] args;
+
+        BooksQuery(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            String limit = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_LIMIT);
+            boolean page = limit != null;
+            //The source depends on the caller selection, the prefix and the filter only use
+            //columns of the books table
+            String table = booksSource(projection, selection, page ? null : sortOrder);
+
+            BooksSelection where = new BooksSelection(uri, selection, selectionArgs);
+            selection = where.selection;
+            selectionArgs = where.args;
+            if (page) {
+                String afterName = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_AFTER_NAME);
+                String afterId = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_AFTER_ID);
+                try {
+                    Integer.parseInt(limit);
+                    if (afterName != null) {
+                        Long.parseLong(afterId);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid page parameters for " + uri);
+                }
+                if (afterName != null) {
+                    //The OR alone is not a range SQLite can seek to, the index would be
+                    //scanned from its first row; name >= after_name starts the scan there
+                    String keyset = DataEntry.SORT_BY_NAME + " >= ? AND (" + DataEntry.SORT_BY_NAME
+                            + " > ? OR (" + DataEntry.SORT_BY_NAME + " = ? AND " + DataEntry._ID + " > ?))";
+                    selection = selection == null ? keyset : "(" + selection + ") AND " + keyset;
+                    String[] keysetArgs = {afterName, afterName, afterName, afterId};
+                    selectionArgs = selectionArgs == null ? keysetArgs : concat(selectionArgs, keysetArgs);
+                }
+                sortOrder = DataEntry.SORT_BY_NAME + ", " + DataEntry._ID;
+            } else if (sortOrder == null) {
+                sortOrder = filterSortOrder(uri);
+            }
+            this.sql = SQLiteQueryBuilder.buildQueryString(false, table, projection, selection, null, null,
+                    sortOrder, limit);
+            this.args = selectionArgs;
+        }
+    }
+
+    /**
+     * Selection of a BOOKS URI: the caller selection AND the conditions of the name prefix and
+     * {@link DataEntry.BookFilter} parameters of the URI. The queries and the writes use it, so
+     * a filtered URI reaches the same rows whatever is done with it.
+     */
+    private static final class BooksSelection {
+        final String selection;
+        final String[] args;
+
+        BooksSelection(Uri uri, String selection, String[] selectionArgs) {
+            List<String> conditions = new ArrayList<>();
+            List<String> conditionArgs = new ArrayList<>();
+            String namePrefix = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_NAME_PREFIX);
+            if (namePrefix != null && !namePrefix.isEmpty()) {
+                conditions.add(DataEntry.SORT_BY_NAME + " >= ?");
+                conditionArgs.add(namePrefix);
+                String upperBound = prefixUpperBound(namePrefix);
+                if (upperBound != null) {
+                    conditions.add(DataEntry.SORT_BY_NAME + " < ?");
+                    conditionArgs.add(upperBound);
+                }
+            }
+            addFilterConditions(uri, conditions, conditionArgs);
+            if (!conditions.isEmpty()) {
+                String where = TextUtils.join(" AND ", conditions);
+                selection = selection == null ? where : "(" + selection + ") AND " + where;
+                String[] whereArgs = conditionArgs.toArray(new String[conditionArgs.size()]);
+                selectionArgs = selectionArgs == null ? whereArgs : concat(selectionArgs, whereArgs);
+            }
+            this.selection = selection;
+            this.args = selectionArgs;
+        }
+
+        /**
+         * Selection of an update or delete of the books table through uri. The caller
+         * selection is matched through the view, see {@link #booksTableSelection}; a page URI
+         * is rejected, a write has no order to page in.
+         */
+        static BooksSelection forWrite(Uri uri, String selection, String[] selectionArgs) {
+            if (uri.getQueryParameter(DataEntry.QUERY_PARAMETER_LIMIT) != null) {
+                throw new IllegalArgumentException("Paging is not supported for writes " + uri);
+            }
+            return new BooksSelection(uri, booksTableSelection(selection), selectionArgs);
+        }
+    }
+
+    /**
+     * Conditions of the {@link DataEntry.BookFilter} parameters of uri. The values are parsed,
+     * so a bad one is an IllegalArgumentException and not an SQL error, and bound as
+     * arguments; the columns keep their numeric affinity, so the indexes are used.
+     */
+    private static void addFilterConditions(Uri uri, List<String> conditions, List<String> args) {
+        try {
+            String supplierId = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_SUPPLIER_ID);
+            if (supplierId != null) {
+                conditions.add(DataEntry.COLUMN_DATA_SUPPLIER_ID + " = ?");
+                args.add(String.valueOf(Long.parseLong(supplierId)));
+            }
+            String minPrice = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_MIN_PRICE);
+            if (minPrice != null) {
+                conditions.add(DataEntry.COLUMN_DATA_PRICE + " >= ?");
+                args.add(String.valueOf(Double.parseDouble(minPrice)));
+            }
+            String maxPrice = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_MAX_PRICE);
+            if (maxPrice != null) {
+                conditions.add(DataEntry.COLUMN_DATA_PRICE + " <= ?");
+                args.add(String.valueOf(Double.parseDouble(maxPrice)));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid filter for " + uri);
+        }
+        if (uri.getBooleanQueryParameter(DataEntry.QUERY_PARAMETER_IN_STOCK, false)) {
+            conditions.add(DataEntry.COLUMN_DATA_QUANTITY + " > 0");
+        }
+    }
+
+    /**
+     * Sort order of the {@link DataEntry#QUERY_PARAMETER_SORT} of uri, null when it has none.
+     * The _id keeps rows with the same key in a stable order and goes the same way as the
+     * key, so the order is read straight from the index.
+     */
+    private static String filterSortOrder(Uri uri) {
+        String sort = uri.getQueryParameter(DataEntry.QUERY_PARAMETER_SORT);
+        if (sort == null) {
+            return null;
+        }
+        switch (sort) {
+            case DataEntry.SORT_NAME:
+                return DataEntry.SORT_BY_NAME + ", " + DataEntry._ID;
+            case DataEntry.SORT_PRICE:
+                return DataEntry.COLUMN_DATA_PRICE + ", " + DataEntry._ID;
+            case DataEntry.SORT_PRICE_DESCENDING:
+                return DataEntry.COLUMN_DATA_PRICE + " DESC, " + DataEntry._ID + " DESC";
+            default:
+                throw new IllegalArgumentException("Unknown sort for " + uri);
+        }
+    }
+
+    /**
+     * Smallest string that sorts after every string starting with prefix in NOCASE order, or
+     * null if there is none. NOCASE folds A-Z to a-z and then compares UTF-8 bytes, which is
+     * code point order, so the last code point of the folded prefix is increased. An increase
+     * that lands on A-Z would be folded back down, so it skips to the code point after Z.
+     */
+    private static String prefixUpperBound(String prefix) {
+        StringBuilder bound = new StringBuilder(prefix.length());
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            bound.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        while (bound.length() > 0) {
+            int last = bound.codePointBefore(bound.length());
+            bound.setLength(bound.length() - Character.charCount(last));
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1;
+                if (next == 'A') {
+                    next = 'Z' + 1;
+                } else if (next == Character.MIN_SURROGATE) {
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                bound.appendCodePoint(next);
+                return bound.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The books table when the query only uses its own columns, so the list queries keep
+     * reading the covering index alone; otherwise the view that joins the supplier.
+     * A selection or sort order can name any column, so they always go to the view.
+     */
+    private static String booksSource(String[] projection, String selection, String sortOrder) {
+        if (projection == null || selection != null || sortOrder != null) {
+            return DataEntry.VIEW_NAME;
+        }
+        for (String column : projection) {
+            if (!BOOK_TABLE_COLUMNS.contains(column)) {
+                return DataEntry.VIEW_NAME;
+            }
+        }
+        return DataEntry.TABLE_NAME;
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Full-text search over name and supplier through the FTS table.
+     * Every word of the text is used as a prefix, so "harry pot" finds "Harry Potter".
+     * Without a sort order the results are ranked: names starting with the text first, then
+     * names containing it, then the books that only matched by supplier.
+     */
+    private Cursor search(SQLiteDatabase database, String text, String[] projection, String selection,
+                          String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal) {
+        String match = buildMatchExpression(text);
+        if (match == null) {
+            //Nothing searchable, return an empty result with the right columns
+            match = "\"\"";
+        }
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(DataEntry.VIEW_NAME + " JOIN " + DataEntry.FTS_TABLE_NAME + " ON "
+                + DataEntry.VIEW_NAME + "." + DataEntry._ID + " = " + DataEntry.FTS_TABLE_NAME + ".docid");
+        builder.setProjectionMap(searchProjectionMap);
+        builder.appendWhere(DataEntry.FTS_TABLE_NAME + " MATCH ");
+        builder.appendWhereEscapeString(match);
+
+        if (sortOrder == null) {
+            String name = DataEntry.VIEW_NAME + "." + DataEntry.COLUMN_DATA_NAME;
+            String term = DatabaseUtils.sqlEscapeString(text.trim().toLowerCase());
+            sortOrder = "CASE WHEN lower(" + name + ") LIKE " + term + " || '%' THEN 0"
+                    + " WHEN instr(lower(" + name + "), " + term + ") > 0 THEN 1 ELSE 2 END, "
+                    + name + " COLLATE NOCASE";
+        }
+        return builder.query(database, projection, selection, selectionArgs, null, null, sortOrder, null,
+                cancellationSignal);
+    }
+
+    //"Harry Pot" -> "harry* pot*". The FTS operators and quotes are removed from the
+    //user text. Returns null when there is no word left.
+    private static String buildMatchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word.toLowerCase()).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
     /**
      * Insert new data into the provider with the given ContentValues.
      * Example inputs to insert() method
@@ -136,12 +920,13 @@ public class MyProvider extends ContentProvider {
      * Result
      * ID os newly inserted row (such as 6 for example)
      */
-    @Override
-    public Uri insert(@NonNull Uri uri, ContentValues contentValues) {
+    private Uri performInsert(Uri uri, ContentValues contentValues) {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case BOOKS:
                 return insertData(uri, contentValues);
+            case SUPPLIERS:
+                return insertSupplier(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
 
@@ -152,36 +937,240 @@ public class MyProvider extends ContentProvider {
     private Uri insertData(Uri uri, ContentValues values) {
         SQLiteDatabase sqliteDatabase = myDbHelper.getWritableDatabase();
 
-        // Insert the new pet with the given values
-        long id = sqliteDatabase.insert(DataContract.DataEntry.TABLE_NAME, null, values);
+        //The supplier and the book are written together, a failed insert leaves no supplier
+        long id;
+        SupplierResolver suppliers = new SupplierResolver(sqliteDatabase);
+        sqliteDatabase.beginTransaction();
+        try {
+            // Insert the new pet with the given values
+            id = sqliteDatabase.insert(DataContract.DataEntry.TABLE_NAME, null,
+                    withNormalizedIsbn(suppliers.resolve(values)));
+            if (id != -1) {
+                sqliteDatabase.setTransactionSuccessful();
+            }
+        } finally {
+            sqliteDatabase.endTransaction();
+            suppliers.close();
+        }
         // If the ID is -1, then the insertion failed. Log an error and return null.
         if (id == -1) {
             Log.e(LOG_TAG, "Failed to insert row for " + uri);
             return null;
         }
 
-        //Notify all listeners that the data has changed for the pet content URI
-        getContext().getContentResolver().notifyChange(uri, null);
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+        notifySuppliers(suppliers);
+        invalidateRow(id);
+        // The new URI with the ID (of the newly inserted row) appended at the end
+        Uri itemUri = ContentUris.withAppendedId(uri, id);
+        //Notify the listeners of the new row, the list observers get it as a descendant
+        notifyChange(itemUri);
+        return itemUri;
+    }
+
+    /**
+     * Insert many rows at once. The default ContentProvider implementation calls insert() for
+     * every row, so every row gets its own transaction and its own notifyChange().
+     * Here all the rows go in a single transaction using one compiled INSERT statement, and
+     * the listeners are notified once at the end.
+     * Rows that can not be inserted (for instance without a name) are logged and skipped.
+     * A row with the ISBN of an existing book updates that book instead, so importing the same
+     * file twice does not duplicate it. This is an UPDATE of the columns the row has, which
+     * falls back to the INSERT when it changes nothing; SQLite on the older devices has no
+     * INSERT ... ON CONFLICT DO UPDATE.
+     * When the URI is an {@link ImportEntry#buildChunkUri import chunk} the import progress is
+     * saved in the same transaction.
+     *
+     * @return the number of rows inserted or updated
+     */
+    private int performBulkInsert(Uri uri, ContentValues[] values) {
+        final int match = uriMatcher.match(uri);
+        switch (match) {
+            case BOOKS:
+                return bulkInsertData(uri, values);
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+    }
+
+    //this method is a helper method for bulkInsert
+    private int bulkInsertData(Uri uri, ContentValues[] values) {
+        SQLiteDatabase database = myDbHelper.getWritableDatabase();
+        String importSource = uri.getQueryParameter(ImportEntry.QUERY_PARAMETER_SOURCE);
+        int rowsInserted = 0;
+        boolean rowsUpdated = false;
+        SupplierResolver suppliers = new SupplierResolver(database);
+        database.beginTransaction();
+        try {
+            SQLiteStatement statement = database.compileStatement(buildBulkInsertSql());
+            //Upsert statements by set of columns, see bulkUpsertColumns()
+            SparseArray<SQLiteStatement> upserts = new SparseArray<>();
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    try {
+                        ContentValues row = withNormalizedIsbn(suppliers.resolve(values[i]));
+                        boolean updated = false;
+                        if (row.getAsString(DataEntry.COLUMN_DATA_ISBN) != null) {
+                            int columns = bulkUpsertColumns(row);
+                            SQLiteStatement upsert = upserts.get(columns);
+                            if (upsert == null) {
+                                upsert = database.compileStatement(buildBulkUpsertSql(columns));
+                                upserts.put(columns, upsert);
+                            }
+                            upsert.clearBindings();
+                            bindBulkUpsertRow(upsert, row, columns);
+                            updated = upsert.executeUpdateDelete() > 0;
+                            rowsUpdated |= updated;
+                        }
+                        if (!updated) {
+                            statement.clearBindings();
+                            bindBulkInsertRow(statement, row);
+                            statement.executeInsert();
+                        }
+                        rowsInserted++;
+                    } catch (SQLiteException | IllegalArgumentException e) {
+                        Log.e(LOG_TAG, "Failed to insert row " + i + " for " + uri, e);
+                    }
+                    //Let the CursorLoader readers run between chunks of a large insert.
+                    //An import chunk must not yield: it would commit rows without the progress.
+                    if (importSource == null && (i + 1) % BULK_YIELD_ROWS == 0) {
+                        database.yieldIfContendedSafely();
+                    }
+                }
+            } finally {
+                statement.close();
+                for (int i = 0; i < upserts.size(); i++) {
+                    upserts.valueAt(i).close();
+                }
+            }
+            if (importSource != null) {
+                saveImportProgress(database, importSource,
+                        uri.getQueryParameter(ImportEntry.QUERY_PARAMETER_RECORDS));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            suppliers.close();
+        }
+
+        notifySuppliers(suppliers);
+        if (rowsUpdated) {
+            invalidateRows(null);
+        }
+        if (rowsInserted > 0) {
+            notifyChange(DataEntry.CONTENT_URI);
+            myDbHelper.checkpointIfManual();
+        }
+        return rowsInserted;
+    }
+
+    private static void saveImportProgress(SQLiteDatabase database, String source, String records) {
+        ContentValues progress = new ContentValues();
+        progress.put(ImportEntry.COLUMN_SOURCE, source);
+        try {
+            progress.put(ImportEntry.COLUMN_RECORDS, Long.parseLong(records));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid import records " + records);
+        }
+        database.insertWithOnConflict(ImportEntry.TABLE_NAME, null, progress,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    //INSERT INTO books (name, quantity, ...) VALUES (?, ?, ...)
+    private static String buildBulkInsertSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(DataEntry.TABLE_NAME).append(" (");
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < BULK_COLUMNS.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                params.append(", ");
+            }
+            sql.append(BULK_COLUMNS[i]);
+            params.append('?');
+        }
+        return sql.append(") VALUES (").append(params).append(')').toString();
+    }
+
+    //Bit i is set when the row has a value for BULK_COLUMNS[i], the ISBN excluded.
+    //An upsert only sets those columns, a missing quantity or price keeps the one of the book.
+    private static int bulkUpsertColumns(ContentValues values) {
+        int columns = 0;
+        for (int i = 0; i < BULK_COLUMNS.length - 1; i++) {
+            if (values.get(BULK_COLUMNS[i]) != null) {
+                columns |= 1 << i;
+            }
+        }
+        return columns;
+    }
+
+    //UPDATE books SET name = ?, quantity = ?, ... WHERE isbn = ? with the given columns
+    private static String buildBulkUpsertSql(int columns) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(DataEntry.TABLE_NAME).append(" SET ");
+        int last = BULK_COLUMNS.length - 1;
+        boolean first = true;
+        for (int i = 0; i < last; i++) {
+            if ((columns & 1 << i) != 0) {
+                sql.append(first ? "" : ", ").append(BULK_COLUMNS[i]).append(" = ?");
+                first = false;
+            }
+        }
+        if (first) {
+            //Only the ISBN, the book is found and left as it is
+            sql.append(BULK_COLUMNS[last]).append(" = ").append(BULK_COLUMNS[last]);
+        }
+        return sql.append(" WHERE ").append(BULK_COLUMNS[last]).append(" = ?").toString();
+    }
+
+    private static void bindBulkUpsertRow(SQLiteStatement statement, ContentValues values, int columns) {
+        int index = 1;
+        for (int i = 0; i < BULK_COLUMNS.length - 1; i++) {
+            if ((columns & 1 << i) != 0) {
+                DatabaseUtils.bindObjectToProgram(statement, index++, values.get(BULK_COLUMNS[i]));
+            }
+        }
+        statement.bindString(index, values.getAsString(DataEntry.COLUMN_DATA_ISBN));
+    }
+
+    //Stores the ISBN in its normalized form, so the lookups find it however it was typed
+    private static ContentValues withNormalizedIsbn(ContentValues values) {
+        if (!values.containsKey(DataEntry.COLUMN_DATA_ISBN)) {
+            return values;
+        }
+        ContentValues normalized = new ContentValues(values);
+        normalized.put(DataEntry.COLUMN_DATA_ISBN, DataEntry.normalizeIsbn(values.getAsString(DataEntry.COLUMN_DATA_ISBN)));
+        return normalized;
+    }
+
+    //Binds one row of values to the compiled statement. The numeric columns fall back to
+    //their table default (0) when they are missing from the ContentValues.
+    private static void bindBulkInsertRow(SQLiteStatement statement, ContentValues values) {
+        for (int i = 0; i < BULK_COLUMNS.length; i++) {
+            Object value = values.get(BULK_COLUMNS[i]);
+            if (value == null && (DataEntry.COLUMN_DATA_QUANTITY.equals(BULK_COLUMNS[i])
+                    || DataEntry.COLUMN_DATA_PRICE.equals(BULK_COLUMNS[i]))) {
+                value = 0;
+            }
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, value);
+        }
     }
 
     /**
      * Updates the data at the given selection and selection arguments, with the new ContentValues.
      */
-    @Override
-    public int update(@NonNull Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
+    private int performUpdate(Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case BOOKS:
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                return updateItem(uri, contentValues, selection, selectionArgs, -1);
             case BOOK_ID:
                 // For the BOOK_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
+                long id = ContentUris.parseId(uri);
                 selection = DataContract.DataEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                selectionArgs = new String[]{String.valueOf(id)};
+                return updateItem(uri, contentValues, selection, selectionArgs, id);
+            case SUPPLIER_ID:
+                return updateSupplier(uri, contentValues, ContentUris.parseId(uri));
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -191,8 +1180,9 @@ public class MyProvider extends ContentProvider {
      * Update an item in the database with the given content values. Apply the changes to the rows
      * specified in the selection and selection arguments (which could be 0 or 1 or more items).
      * Return the number of rows that were successfully updated.
+     * id is the row of a BOOK_ID update, or -1 when the rows come from the selection.
      */
-    private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs, long id) {
         // If the {@link DataEntry#COLUMN_DATA_NAME} key is present,
         // check that the name value is not null.
         if (values.containsKey(DataContract.DataEntry.COLUMN_DATA_NAME)) {
@@ -208,11 +1198,55 @@ public class MyProvider extends ContentProvider {
 
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = myDbHelper.getWritableDatabase();
+        if (id == -1) {
+            BooksSelection where = BooksSelection.forWrite(uri, selection, selectionArgs);
+            selection = where.selection;
+            selectionArgs = where.args;
+        }
 
         // Returns the number of database rows affected by the update statement
-        int rowsUpdated = database.update(DataContract.DataEntry.TABLE_NAME, values, selection, selectionArgs);
+        int rowsUpdated;
+        long[] ids = null;
+        boolean phoneUpdated = false;
+        SupplierResolver suppliers = new SupplierResolver(database);
+        database.beginTransaction();
+        try {
+            if (id == -1) {
+                ids = cachedRowsMatching(database, selection, selectionArgs);
+            }
+            values = withNormalizedIsbn(suppliers.resolve(values));
+            if (values.containsKey(DataEntry.COLUMN_DATA_SUPPLIER_PH)) {
+                //A phone without a supplier name belongs to the current supplier of the books
+                phoneUpdated = updateSupplierPhone(database,
+                        values.getAsString(DataEntry.COLUMN_DATA_SUPPLIER_PH), selection, selectionArgs);
+                values = new ContentValues(values);
+                values.remove(DataEntry.COLUMN_DATA_SUPPLIER_PH);
+            }
+            if (values.size() > 0) {
+                rowsUpdated = database.update(DataEntry.TABLE_NAME, values, selection, selectionArgs);
+            } else {
+                rowsUpdated = (int) DatabaseUtils.queryNumEntries(database, DataEntry.TABLE_NAME,
+                        selection, selectionArgs);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            suppliers.close();
+        }
+
+        notifySuppliers(suppliers);
+        if (phoneUpdated) {
+            //Every book of the supplier shows the new phone
+            invalidateRows(null);
+            notifyChange(SupplierEntry.CONTENT_URI);
+            notifyChange(DataEntry.CONTENT_URI);
+        } else if (id != -1) {
+            invalidateRow(id);
+        } else {
+            invalidateRows(ids);
+        }
         if (rowsUpdated>0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
@@ -220,34 +1254,321 @@ public class MyProvider extends ContentProvider {
     /**
      * Delete the data at the given selection and selection arguments.
      */
-    @Override
-    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+    private int performDelete(Uri uri, String selection, String[] selectionArgs) {
         final int match = uriMatcher.match(uri);
         // Track the number of rows that were deleted
         int rowsDeleted;
         SQLiteDatabase database = myDbHelper.getWritableDatabase();
         switch (match) {
             case BOOKS:
-                //Delete all rows that match the selection and selection args
-                rowsDeleted = database.delete(DataContract.DataEntry.TABLE_NAME, selection, selectionArgs);
+                //Delete all rows that match the selection and the filter of the URI
+                BooksSelection where = BooksSelection.forWrite(uri, selection, selectionArgs);
+                rowsDeleted = deleteBooks(database, where.selection, where.args);
+                if (rowsDeleted > 0 && !database.inTransaction()) {
+                    //Not inside applyBatch(). Once enough pages are free they are given back on
+                    //the thread of MyDbHelper, this call does not wait for them
+                    myDbHelper.reclaimFreePagesIfNeeded(database);
+                    myDbHelper.checkpointIfManual();
+                }
                 break;
             case BOOK_ID:
                 //Delete a single row given the ID in the URI
+                long id = ContentUris.parseId(uri);
                 selection = DataEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                selectionArgs = new String[]{String.valueOf(id)};
                 rowsDeleted = database.delete(DataEntry.TABLE_NAME, selection, selectionArgs);
+                invalidateRow(id);
+                //The pages freed by many single deletes add up
+                if (rowsDeleted > 0 && !database.inTransaction()) {
+                    myDbHelper.reclaimFreePagesIfNeeded(database);
+                }
+                break;
+            case IMPORTS:
+                //Forget the progress of finished or abandoned imports
+                rowsDeleted = database.delete(ImportEntry.TABLE_NAME, selection, selectionArgs);
+                break;
+            case BOOK_CHANGES:
+                //Prune the log, for instance version <= the oldest version every client has
+                rowsDeleted = database.delete(ChangeEntry.TABLE_NAME, selection, selectionArgs);
+                break;
+            case SUPPLIER_ID:
+                //Fails with a constraint exception while the supplier still has books
+                rowsDeleted = database.delete(SupplierEntry.TABLE_NAME, SupplierEntry._ID + "=?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
         // If 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
+    /**
+     * Deletes the books that match the selection {@link #DELETE_CHUNK_ROWS} at a time.
+     * Every chunk commits on its own, so the write lock is released between them and
+     * the other writers and the WAL checkpoints are not held up for the whole delete; every
+     * deleted book also runs the FTS, totals and change log triggers. A failure leaves the
+     * chunks already committed deleted. The caller notifies the change once, at the end.
+     */
+    private int deleteBooks(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        String chunk = DataEntry._ID + " IN (SELECT " + DataEntry._ID + " FROM " + DataEntry.TABLE_NAME
+                + (selection == null ? "" : " WHERE " + selection) + " LIMIT " + DELETE_CHUNK_ROWS + ")";
+        int rowsDeleted = 0;
+        int chunkRows;
+        do {
+            chunkRows = database.delete(DataEntry.TABLE_NAME, chunk, selectionArgs);
+            if (chunkRows > 0) {
+                //Readers between two chunks must not find the deleted rows in the cache
+                invalidateRows(null);
+            }
+            rowsDeleted += chunkRows;
+        } while (chunkRows == DELETE_CHUNK_ROWS);
+        return rowsDeleted;
+    }
+
+    /**
+     * Apply a batch of operations inside a single transaction.
+     * Back references between operations are resolved by {@link ContentProviderOperation#apply},
+     * operations flagged with yieldAllowed are used as yield points, and the change
+     * notifications are held back until the whole batch has been committed so that the
+     * CatalogActivity loader only reloads once.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        StrictMode.noteSlowCall("MyProvider.applyBatch");
+        SQLiteDatabase database = myDbHelper.getWritableDatabase();
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        Set<Long> invalidatedIds = new HashSet<>();
+        pendingNotifications.set(changedUris);
+        pendingInvalidations.set(invalidatedIds);
+        boolean committed = false;
+        database.beginTransaction();
+        try {
+            final int count = operations.size();
+            ContentProviderResult[] results = new ContentProviderResult[count];
+            for (int i = 0; i < count; i++) {
+                ContentProviderOperation operation = operations.get(i);
+                if (i > 0 && operation.isYieldAllowed()) {
+                    database.yieldIfContendedSafely();
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            database.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } finally {
+            database.endTransaction();
+            pendingNotifications.remove();
+            pendingInvalidations.remove();
+            if (invalidatedIds.contains(ALL_ROWS)) {
+                rowCache.invalidateAll();
+            } else {
+                for (long id : invalidatedIds) {
+                    rowCache.invalidate(id);
+                }
+            }
+            if (committed) {
+                for (Uri uri : changedUris) {
+                    notifyChange(uri);
+                }
+                myDbHelper.checkpointIfManual();
+            }
+        }
+    }
+
+    //Ids of the cached rows that match the selection, to invalidate them once they are written.
+    //Returns null when the cache is empty, there is nothing to look up and the whole cache
+    //can be invalidated for free.
+    private long[] cachedRowsMatching(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        if (rowCache.size() == 0) {
+            return null;
+        }
+        Cursor cursor = database.query(DataEntry.TABLE_NAME, new String[]{DataEntry._ID},
+                selection, selectionArgs, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A selection on books can name the supplier columns, which only the view has, so the
+     * rows of a selection write are picked through the view.
+     */
+    private static String booksTableSelection(String selection) {
+        if (selection == null) {
+            return null;
+        }
+        return DataEntry._ID + " IN (SELECT " + DataEntry._ID + " FROM " + DataEntry.VIEW_NAME
+                + " WHERE " + selection + ")";
+    }
+
+    //Sets the phone of the suppliers of the books in the selection, returns true if one changed
+    private static boolean updateSupplierPhone(SQLiteDatabase database, String phone, String selection,
+                                               String[] selectionArgs) {
+        if (phone == null) {
+            throw new IllegalArgumentException("Supplier requires a phone");
+        }
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_PHONE, phone);
+        String books = "SELECT " + DataEntry.COLUMN_DATA_SUPPLIER_ID + " FROM " + DataEntry.TABLE_NAME
+                + (selection == null ? "" : " WHERE " + selection);
+        String[] args = selectionArgs == null ? new String[]{phone} : concat(selectionArgs, new String[]{phone});
+        return database.update(SupplierEntry.TABLE_NAME, values, SupplierEntry._ID + " IN (" + books + ") AND "
+                + SupplierEntry.COLUMN_PHONE + " <> ?", args) > 0;
+    }
+
+    //A new supplier or a new phone written by a book write also changes the suppliers
+    private void notifySuppliers(SupplierResolver suppliers) {
+        if (suppliers.phoneChanged()) {
+            invalidateRows(null);
+            notifyChange(DataEntry.CONTENT_URI);
+        }
+        if (suppliers.suppliersInserted() || suppliers.phoneChanged()) {
+            notifyChange(SupplierEntry.CONTENT_URI);
+        }
+    }
+
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        checkSupplierValues(values);
+        if (values.getAsString(SupplierEntry.COLUMN_PHONE) == null) {
+            throw new IllegalArgumentException("Supplier requires a phone");
+        }
+        long id = myDbHelper.getWritableDatabase().insert(SupplierEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        Uri itemUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(itemUri);
+        return itemUri;
+    }
+
+    /**
+     * Renames a supplier or changes its phone, a single row however many books it has.
+     * The books of the supplier change with it.
+     */
+    private int updateSupplier(Uri uri, ContentValues values, long id) {
+        checkSupplierValues(values);
+        if (values.size() == 0) {
+            return 0;
+        }
+        int rowsUpdated = myDbHelper.getWritableDatabase().update(SupplierEntry.TABLE_NAME, values,
+                SupplierEntry._ID + "=?", new String[]{String.valueOf(id)});
+        if (rowsUpdated > 0) {
+            invalidateRows(null);
+            notifyChange(uri);
+            notifyChange(DataEntry.CONTENT_URI);
+        }
+        return rowsUpdated;
+    }
+
+    //Only the name and the phone of a supplier can be written, the totals belong to the triggers
+    private static void checkSupplierValues(ContentValues values) {
+        for (String key : values.keySet()) {
+            if (!SupplierEntry.COLUMN_NAME.equals(key) && !SupplierEntry.COLUMN_PHONE.equals(key)) {
+                throw new IllegalArgumentException("Unknown supplier column " + key);
+            }
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_NAME) && values.getAsString(SupplierEntry.COLUMN_NAME) == null) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+    }
+
+    private void invalidateRows(long[] ids) {
+        if (ids == null) {
+            rowCache.invalidateAll();
+            Set<Long> pending = pendingInvalidations.get();
+            if (pending != null) {
+                pending.add(ALL_ROWS);
+            }
+            return;
+        }
+        for (long id : ids) {
+            invalidateRow(id);
+        }
+    }
+
+    private void invalidateRow(long id) {
+        rowCache.invalidate(id);
+        Set<Long> pending = pendingInvalidations.get();
+        if (pending != null) {
+            pending.add(id);
+        }
+    }
+
+    //Notify the listeners of the uri, or remember it when a batch is running on this thread
+    private void notifyChange(Uri uri) {
+        Set<Uri> changedUris = pendingNotifications.get();
+        if (changedUris != null) {
+            changedUris.add(uri);
+        } else {
+            changeNotifier.notifyChange(uri);
+        }
+    }
+
+    /**
+     * Opens the CSV export of the books table. The file is a pipe: a background thread
+     * streams the rows into it while the caller reads, see {@link BookExportWriter}.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (uriMatcher.match(uri) != BOOK_EXPORT) {
+            throw new FileNotFoundException("No file for " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("The export of " + uri + " is read only");
+        }
+        return openPipeHelper(uri, DataEntry.MIME_TYPE_CSV, null, null,
+                new BookExportWriter(myDbHelper, BOOK_COLUMNS));
+    }
+
+    /**
+     * Opens the export of the books table in the first format, CSV or JSON, that matches
+     * mimeTypeFilter.
+     */
+    @Override
+    public AssetFileDescriptor openTypedAssetFile(@NonNull Uri uri, @NonNull String mimeTypeFilter, Bundle opts)
+            throws FileNotFoundException {
+        if (uriMatcher.match(uri) != BOOK_EXPORT) {
+            return super.openTypedAssetFile(uri, mimeTypeFilter, opts);
+        }
+        for (String mimeType : EXPORT_MIME_TYPES) {
+            if (ClipDescription.compareMimeTypes(mimeType, mimeTypeFilter)) {
+                ParcelFileDescriptor pipe = openPipeHelper(uri, mimeType, opts, null,
+                        new BookExportWriter(myDbHelper, BOOK_COLUMNS));
+                return new AssetFileDescriptor(pipe, 0, AssetFileDescriptor.UNKNOWN_LENGTH);
+            }
+        }
+        throw new FileNotFoundException("No export of " + uri + " as " + mimeTypeFilter);
+    }
+
+    @Override
+    public String[] getStreamTypes(@NonNull Uri uri, @NonNull String mimeTypeFilter) {
+        if (uriMatcher.match(uri) != BOOK_EXPORT) {
+            return null;
+        }
+        ArrayList<String> types = new ArrayList<>();
+        for (String mimeType : EXPORT_MIME_TYPES) {
+            if (ClipDescription.compareMimeTypes(mimeType, mimeTypeFilter)) {
+                types.add(mimeType);
+            }
+        }
+        return types.isEmpty() ? null : types.toArray(new String[types.size()]);
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      *
@@ -262,6 +1583,26 @@ public class MyProvider extends ContentProvider {
                 return DataEntry.CONTENT_LIST_TYPE;
             case BOOK_ID:
                 return DataEntry.CONTENT_ITEM_TYPE;
+            case BOOK_SEARCH:
+                return DataEntry.CONTENT_LIST_TYPE;
+            case IMPORTS:
+                return ImportEntry.CONTENT_LIST_TYPE;
+            case BOOK_EXPORT:
+                return DataEntry.MIME_TYPE_CSV;
+            case BOOK_SUMMARY:
+                return SummaryEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_SUMMARY:
+                return SummaryEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_BOOKS:
+                return DataEntry.CONTENT_LIST_TYPE;
+            case BOOK_ISBN:
+                return DataEntry.CONTENT_ITEM_TYPE;
+            case BOOK_CHANGES:
+                return ChangeEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
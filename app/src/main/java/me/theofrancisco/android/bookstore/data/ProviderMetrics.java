@@ -0,0 +1,130 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static me.theofrancisco.android.bookstore.data.MyDbHelper.LOG_TAG;
+
+/**
+ * Latency and row counts of {@link MyProvider}, per operation and URI match: calls, total
+ * time, total rows and a histogram of power of two buckets in microseconds. Calls slower
+ * than {@link #SLOW_OPERATION_MS} are also logged.
+ */
+class ProviderMetrics {
+
+    static final int OPERATION_QUERY = 0;
+    static final int OPERATION_INSERT = 1;
+    static final int OPERATION_UPDATE = 2;
+    static final int OPERATION_DELETE = 3;
+    private static final String[] OPERATION_NAMES = {"query", "insert", "update", "delete"};
+
+    //Operations at least this slow go to the slow operation log
+    private static final long SLOW_OPERATION_MS = 50;
+    private static final int SLOW_LOG_SIZE = 32;
+    //Buckets of 1us, 2us, 4us ... up to 2^24us (about 16s) and everything slower
+    private static final int BUCKETS = 26;
+
+    //Names of the URI matches, the position of the name is the match slot
+    private final String[] matchNames;
+
+    private final AtomicLongArray calls;
+    private final AtomicLongArray totalNanos;
+    private final AtomicLongArray rows;
+    private final AtomicLongArray histograms;
+
+    private final AtomicReferenceArray<String> slowLog = new AtomicReferenceArray<>(SLOW_LOG_SIZE);
+    private final AtomicInteger slowLogNext = new AtomicInteger();
+
+    /**
+     * @param matchNames name of every URI match slot; the provider passes a slot in
+     *                   {@link #record}, anything out of range is counted as "unknown".
+     */
+    ProviderMetrics(String[] matchNames) {
+        this.matchNames = new String[matchNames.length + 1];
+        System.arraycopy(matchNames, 0, this.matchNames, 0, matchNames.length);
+        this.matchNames[matchNames.length] = "unknown";
+        int slots = OPERATION_NAMES.length * this.matchNames.length;
+        calls = new AtomicLongArray(slots);
+        totalNanos = new AtomicLongArray(slots);
+        rows = new AtomicLongArray(slots);
+        histograms = new AtomicLongArray(slots * BUCKETS);
+    }
+
+    /**
+     * Records one call.
+     *
+     * @param operation one of the OPERATION_ constants
+     * @param matchSlot the URI match slot
+     * @param nanos     time taken by the call
+     * @param rowCount  rows returned or written
+     * @param uri       only used by the slow operation log
+     */
+    void record(int operation, int matchSlot, long nanos, int rowCount, Object uri) {
+        if (matchSlot < 0 || matchSlot >= matchNames.length) {
+            matchSlot = matchNames.length - 1;
+        }
+        int slot = operation * matchNames.length + matchSlot;
+        calls.incrementAndGet(slot);
+        totalNanos.addAndGet(slot, nanos);
+        rows.addAndGet(slot, rowCount);
+        histograms.incrementAndGet(slot * BUCKETS + bucket(nanos));
+
+        long millis = nanos / 1000000;
+        if (millis >= SLOW_OPERATION_MS) {
+            String entry = OPERATION_NAMES[operation] + " " + uri + " " + millis + "ms " + rowCount + " rows";
+            Log.w(LOG_TAG, "Slow provider operation: " + entry);
+            int index = (slowLogNext.getAndIncrement() & Integer.MAX_VALUE) % SLOW_LOG_SIZE;
+            slowLog.set(index, entry);
+        }
+    }
+
+    //Index of the power of two bucket of the duration in microseconds
+    private static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKETS ? bucket : BUCKETS - 1;
+    }
+
+    /**
+     * Returns a snapshot of the metrics. For every pair with calls there is a Bundle under
+     * "operation.match" (for instance "query.BOOKS") holding count, total_us, rows and
+     * histogram; "slow" holds the slow operation log, oldest first.
+     */
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+            for (int match = 0; match < matchNames.length; match++) {
+                int slot = operation * matchNames.length + match;
+                long count = calls.get(slot);
+                if (count == 0) {
+                    continue;
+                }
+                long[] histogram = new long[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++) {
+                    histogram[i] = histograms.get(slot * BUCKETS + i);
+                }
+                Bundle metrics = new Bundle();
+                metrics.putLong("count", count);
+                metrics.putLong("total_us", totalNanos.get(slot) / 1000);
+                metrics.putLong("rows", rows.get(slot));
+                metrics.putLongArray("histogram", histogram);
+                bundle.putBundle(OPERATION_NAMES[operation] + "." + matchNames[match], metrics);
+            }
+        }
+        ArrayList<String> slow = new ArrayList<>();
+        int next = slowLogNext.get() & Integer.MAX_VALUE;
+        for (int i = 0; i < SLOW_LOG_SIZE; i++) {
+            String entry = slowLog.get((next + i) % SLOW_LOG_SIZE);
+            if (entry != null) {
+                slow.add(entry);
+            }
+        }
+        bundle.putStringArrayList("slow", slow);
+        return bundle;
+    }
+}
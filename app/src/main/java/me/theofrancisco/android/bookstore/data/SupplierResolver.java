@@ -0,0 +1,131 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
+
+/**
+ * Replaces the supplier name and phone of a book write with the supplier_id of the books
+ * table. A supplier is found by name; it is created the first time the name is seen, and its
+ * phone is updated when the write carries a different one.
+ * <p>
+ * It is used inside the transaction of the write, by one thread. The suppliers it finds are
+ * remembered, so a bulk insert looks every supplier up only once.
+ */
+class SupplierResolver {
+
+    private final SQLiteDatabase database;
+    private SQLiteStatement findStatement;
+    private SQLiteStatement insertStatement;
+    private SQLiteStatement phoneStatement;
+
+    //Supplier ids by name, and the phone last written for every id
+    private final Map<String, Long> ids = new HashMap<>();
+    private final Map<Long, String> phones = new HashMap<>();
+
+    private boolean suppliersInserted;
+    private boolean phoneChanged;
+
+    SupplierResolver(SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns values with {@link DataEntry#COLUMN_DATA_SUPPLIER} and
+     * {@link DataEntry#COLUMN_DATA_SUPPLIER_PH} replaced by {@link DataEntry#COLUMN_DATA_SUPPLIER_ID},
+     * or values itself when it has no supplier name.
+     */
+    ContentValues resolve(ContentValues values) {
+        if (!values.containsKey(DataEntry.COLUMN_DATA_SUPPLIER)) {
+            return values;
+        }
+        String name = values.getAsString(DataEntry.COLUMN_DATA_SUPPLIER);
+        if (name == null) {
+            throw new IllegalArgumentException("Book requires a supplier");
+        }
+        ContentValues resolved = new ContentValues(values);
+        resolved.remove(DataEntry.COLUMN_DATA_SUPPLIER);
+        resolved.remove(DataEntry.COLUMN_DATA_SUPPLIER_PH);
+        resolved.put(DataEntry.COLUMN_DATA_SUPPLIER_ID,
+                supplierId(name, values.getAsString(DataEntry.COLUMN_DATA_SUPPLIER_PH)));
+        return resolved;
+    }
+
+    private long supplierId(String name, String phone) {
+        Long id = ids.get(name);
+        if (id == null) {
+            if (findStatement == null) {
+                findStatement = database.compileStatement("SELECT " + SupplierEntry._ID + " FROM "
+                        + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_NAME + " = ?");
+            }
+            findStatement.bindString(1, name);
+            try {
+                id = findStatement.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                id = insertSupplier(name, phone == null ? "" : phone);
+                phones.put(id, phone == null ? "" : phone);
+            }
+            ids.put(name, id);
+        }
+        if (phone != null && !phone.equals(phones.get(id))) {
+            if (phoneStatement == null) {
+                phoneStatement = database.compileStatement("UPDATE " + SupplierEntry.TABLE_NAME + " SET "
+                        + SupplierEntry.COLUMN_PHONE + " = ? WHERE " + SupplierEntry._ID + " = ? AND "
+                        + SupplierEntry.COLUMN_PHONE + " <> ?");
+            }
+            phoneStatement.bindString(1, phone);
+            phoneStatement.bindLong(2, id);
+            phoneStatement.bindString(3, phone);
+            if (phoneStatement.executeUpdateDelete() > 0) {
+                phoneChanged = true;
+            }
+            phones.put(id, phone);
+        }
+        return id;
+    }
+
+    private long insertSupplier(String name, String phone) {
+        if (insertStatement == null) {
+            insertStatement = database.compileStatement("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                    + SupplierEntry.COLUMN_NAME + ", " + SupplierEntry.COLUMN_PHONE + ") VALUES (?, ?)");
+        }
+        insertStatement.bindString(1, name);
+        insertStatement.bindString(2, phone);
+        long id = insertStatement.executeInsert();
+        suppliersInserted = true;
+        return id;
+    }
+
+    /**
+     * True when a new supplier was created.
+     */
+    boolean suppliersInserted() {
+        return suppliersInserted;
+    }
+
+    /**
+     * True when the phone of a supplier changed, which changes every book of that supplier.
+     */
+    boolean phoneChanged() {
+        return phoneChanged;
+    }
+
+    void close() {
+        if (findStatement != null) {
+            findStatement.close();
+        }
+        if (insertStatement != null) {
+            insertStatement.close();
+        }
+        if (phoneStatement != null) {
+            phoneStatement.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package me.theofrancisco.android.bookstore.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small JMH style harness for the benchmarks of the app.
+ * <p>
+ * Every benchmark runs a number of warmup iterations, which are thrown away, and then the
+ * measured iterations. An iteration returns how many operations it did (rows, calls...), the
+ * primary score is the average time of one operation with the 99.9% confidence error of the
+ * iterations, like the JMH "avgt" mode, and the throughput is added as a secondary metric.
+ * {@link #write()} saves the results in the JSON format of JMH, one file per suite, so the
+ * runs of two commits can be compared with the usual JMH tools.
+ * <p>
+ * The benchmarks run in one thread without forks, the numbers are only comparable between
+ * runs on the same machine.
+ */
+public final class BenchmarkReport {
+
+    /**
+     * One iteration of a benchmark. setUp() runs before every iteration and is not measured.
+     */
+    public abstract static class Iteration {
+
+        private Map<String, Double> secondary;
+
+        public void setUp() throws Exception {
+        }
+
+        /**
+         * @return the number of operations done by this iteration
+         */
+        public abstract long run() throws Exception;
+
+        /**
+         * Adds a value to the secondary metric with the given name, for instance
+         * "allocations/row". Values recorded during the warmup are dropped.
+         */
+        protected void record(String metric, double value) {
+            secondary.put(metric, value);
+        }
+    }
+
+    //System property with the directory of the JSON files, set by the Gradle benchmark run
+    private static final String OUTPUT_DIR_PROPERTY = "benchmark.outputDir";
+
+    public static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    public static final int DEFAULT_MEASUREMENT_ITERATIONS = 10;
+
+    //Student t quantiles of the two sided 99.9% interval, by degrees of freedom 1..20.
+    //Past 20 the value for 20 is kept, which only makes the error a little larger.
+    private static final double[] T_999 = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408,
+            5.041, 4.781, 4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850};
+
+    private final Class<?> suite;
+    private final File outputDir;
+    private final List<String> results = new ArrayList<>();
+
+    /**
+     * @param suite     class of the benchmarks, their names are prefixed with its name
+     * @param outputDir directory of the JSON file
+     */
+    public BenchmarkReport(Class<?> suite, File outputDir) {
+        this.suite = suite;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Directory given to the JVM benchmarks by the Gradle run, build/benchmark-results.
+     */
+    public static File jvmOutputDir() {
+        return new File(System.getProperty(OUTPUT_DIR_PROPERTY, "build/benchmark-results"));
+    }
+
+    public double run(String benchmark, Iteration iteration) throws Exception {
+        return run(benchmark, DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASUREMENT_ITERATIONS, iteration);
+    }
+
+    /**
+     * Runs the benchmark and keeps its result for {@link #write()}.
+     *
+     * @return the average time of one operation, in microseconds
+     */
+    public double run(String benchmark, int warmupIterations, int measurementIterations,
+                      Iteration iteration) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration.secondary = new LinkedHashMap<>();
+            iteration.setUp();
+            iteration.run();
+        }
+        double[] micros = new double[measurementIterations];
+        double[] throughput = new double[measurementIterations];
+        Map<String, double[]> secondary = new LinkedHashMap<>();
+        for (int i = 0; i < measurementIterations; i++) {
+            iteration.secondary = new LinkedHashMap<>();
+            iteration.setUp();
+            long start = System.nanoTime();
+            long operations = iteration.run();
+            long elapsed = System.nanoTime() - start;
+            if (operations <= 0) {
+                throw new IllegalStateException(benchmark + " did not do any operation");
+            }
+            micros[i] = elapsed / 1000.0 / operations;
+            throughput[i] = operations * 1e9 / elapsed;
+            for (Map.Entry<String, Double> entry : iteration.secondary.entrySet()) {
+                double[] values = secondary.get(entry.getKey());
+                if (values == null) {
+                    values = new double[measurementIterations];
+                    secondary.put(entry.getKey(), values);
+                }
+                values[i] = entry.getValue();
+            }
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"benchmark\":").append(quote(suite.getName() + "." + benchmark))
+                .append(",\"mode\":\"avgt\",\"threads\":1,\"forks\":0")
+                .append(",\"warmupIterations\":").append(warmupIterations)
+                .append(",\"measurementIterations\":").append(measurementIterations)
+                .append(",\"primaryMetric\":");
+        appendMetric(json, micros, "us/op");
+        json.append(",\"secondaryMetrics\":{\"throughput\":");
+        appendMetric(json, throughput, "ops/s");
+        for (Map.Entry<String, double[]> entry : secondary.entrySet()) {
+            json.append(',').append(quote(entry.getKey())).append(':');
+            appendMetric(json, entry.getValue(), entry.getKey());
+        }
+        json.append("}}");
+        results.add(json.toString());
+
+        double score = mean(micros);
+        System.out.println(String.format(Locale.US, "%s.%s  %.3f +- %.3f us/op  %.1f ops/s",
+                suite.getSimpleName(), benchmark, score, error(micros), mean(throughput)));
+        return score;
+    }
+
+    /**
+     * Writes the results to outputDir/SuiteClassName.json as a JMH result array.
+     */
+    public File write() throws IOException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Can not create " + outputDir);
+        }
+        File file = new File(outputDir, suite.getSimpleName() + ".json");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write(results.get(i));
+                writer.write(i < results.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void appendMetric(StringBuilder json, double[] values, String unit) {
+        double score = mean(values);
+        double error = error(values);
+        json.append("{\"score\":").append(number(score))
+                .append(",\"scoreError\":").append(number(error))
+                .append(",\"scoreConfidence\":[").append(number(score - error)).append(',')
+                .append(number(score + error)).append(']')
+                .append(",\"scoreUnit\":").append(quote(unit))
+                .append(",\"rawData\":[[");
+        for (int i = 0; i < values.length; i++) {
+            json.append(i > 0 ? "," : "").append(number(values[i]));
+        }
+        json.append("]]}");
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    //Half width of the 99.9% confidence interval of the mean, NaN with a single value like JMH
+    private static double error(double[] values) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double deviation = Math.sqrt(squares / (values.length - 1));
+        double t = T_999[Math.min(values.length - 1, T_999.length) - 1];
+        return t * deviation / Math.sqrt(values.length);
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "\"NaN\"" : String.format(Locale.US, "%.6f", value);
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
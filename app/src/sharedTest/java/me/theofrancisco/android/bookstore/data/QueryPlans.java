@@ -0,0 +1,66 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import java.util.regex.Pattern;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EXPLAIN QUERY PLAN helpers for the statements built by {@link MyProvider.BooksQuery}.
+ */
+public final class QueryPlans {
+
+    //The books table in a plan: "TABLE books" before SQLite 3.8.9, "books" after. Through the
+    //view it is "TABLE books AS b" before and only the alias "b" in the newer versions.
+    private static final String BOOKS = "(TABLE )?(books|books AS b|b)";
+
+    private QueryPlans() {
+    }
+
+    //Details of the EXPLAIN QUERY PLAN rows of the list query of uri, one per line
+    public static String planOf(SQLiteDatabase database, Uri uri) {
+        MyProvider.BooksQuery query = new MyProvider.BooksQuery(uri, DataEntry.LIST_SUMMARY_PROJECTION,
+                null, null, null);
+        return planOf(database, query.sql, query.args);
+    }
+
+    public static String planOf(SQLiteDatabase database, String sql, String[] args) {
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder(sql).append('\n');
+        try {
+            int detailColumnIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailColumnIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+
+    public static void assertSearches(String indexAndTerms, String plan) {
+        assertTrue(plan, plan.matches("(?s).*SEARCH " + BOOKS + " USING (COVERING )?INDEX "
+                + Pattern.quote(indexAndTerms) + ".*"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    //A page starts at its key in the index, the rows with the same name may still be sorted
+    public static void assertSeeks(String indexAndTerms, String plan) {
+        assertTrue(plan, plan.matches("(?s).*SEARCH " + BOOKS + " USING COVERING INDEX "
+                + Pattern.quote(indexAndTerms) + ".*"));
+        assertFalse(plan, plan.contains("SCAN"));
+    }
+
+    //The rows come in the order of the index, at most the rows with the same key are sorted
+    public static void assertOrderedBy(String index, String plan) {
+        assertTrue(plan, plan.matches("(?s).*(SCAN|SEARCH) " + BOOKS + " USING (COVERING )?INDEX "
+                + index + "\\b.*"));
+        assertFalse(plan, plan.contains("USE TEMP B-TREE FOR ORDER BY"));
+    }
+}
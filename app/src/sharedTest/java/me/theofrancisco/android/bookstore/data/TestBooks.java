@@ -0,0 +1,38 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentValues;
+
+import java.util.Locale;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * Rows of books for the tests and the benchmarks. Book i always has the same values, the
+ * names are spread over the alphabet and the books over {@link #SUPPLIER_COUNT} suppliers.
+ */
+public final class TestBooks {
+
+    public static final int SUPPLIER_COUNT = 20;
+
+    private TestBooks() {
+    }
+
+    public static ContentValues book(int i) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, String.format(Locale.US, "%c%c Book %06d",
+                (char) ('A' + (i * 7) % 26), (char) ('a' + (i * 11) % 26), i));
+        values.put(DataEntry.COLUMN_DATA_PRICE, 1 + (i * 37) % 5000 / 100.0);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, (i * 13) % 50);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Supplier " + i % SUPPLIER_COUNT);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-01" + String.format(Locale.US, "%02d", i % SUPPLIER_COUNT));
+        return values;
+    }
+
+    public static ContentValues[] books(int first, int count) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = book(first + i);
+        }
+        return values;
+    }
+}
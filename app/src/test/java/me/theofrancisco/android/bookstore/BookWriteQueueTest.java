@@ -0,0 +1,160 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.MyProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class BookWriteQueueTest {
+
+    private ContentResolver contentResolver;
+    private BookWriteQueue writeQueue;
+    private Uri bookUri;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        writeQueue = new BookWriteQueue(contentResolver);
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, "Queued Book");
+        values.put(DataEntry.COLUMN_DATA_PRICE, 7.5);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, 10);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Queue Supplier");
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0120");
+        bookUri = contentResolver.insert(DataEntry.CONTENT_URI, values);
+    }
+
+    @Test
+    public void update_twoSavesOfOneEditor_setTheLastQuantity() {
+        //The editor saves 12 over the loaded 10, then saves again from the 12 it saved
+        Result first = new Result();
+        Result second = new Result();
+        writeQueue.update(bookUri, new ContentValues(), 10, 12, first);
+        writeQueue.update(bookUri, new ContentValues(), 12, 14, second);
+
+        assertEquals(BookWriteQueue.RESULT_OK, first.await());
+        assertEquals(BookWriteQueue.RESULT_OK, second.await());
+        assertEquals(14, quantity());
+    }
+
+    @Test
+    public void update_fromAQuantityLoadedBeforeAnotherSave_isAConflict() {
+        Result first = new Result();
+        writeQueue.update(bookUri, new ContentValues(), 10, 12, first);
+        assertEquals(BookWriteQueue.RESULT_OK, first.await());
+
+        //A second editor opened before the first save was written still shows 10
+        Result second = new Result();
+        writeQueue.update(bookUri, new ContentValues(), 10, 15, second);
+
+        assertEquals(BookWriteQueue.RESULT_QUANTITY_NOT_SAVED, second.await());
+        assertEquals(12, quantity());
+    }
+
+    @Test
+    public void update_fromAFreshLoadOfAQuantitySeenBefore_isApplied() {
+        //Editor A saves 12 over 10, a sale of 2 brings the stock back to 10
+        Result first = new Result();
+        writeQueue.update(bookUri, new ContentValues(), 10, 12, first);
+        assertEquals(BookWriteQueue.RESULT_OK, first.await());
+        adjustStock(-2);
+
+        //Editor B loads 10 and types 11
+        Result second = new Result();
+        writeQueue.update(bookUri, new ContentValues(), 10, 11, second);
+
+        assertEquals(BookWriteQueue.RESULT_OK, second.await());
+        assertEquals(11, quantity());
+    }
+
+    @Test
+    public void update_afterASale_writesTheOtherColumnsAndKeepsTheSale() {
+        adjustStock(-3);
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, "Renamed");
+
+        Result result = new Result();
+        writeQueue.update(bookUri, values, 10, 12, result);
+
+        assertEquals(BookWriteQueue.RESULT_QUANTITY_NOT_SAVED, result.await());
+        assertEquals(7, quantity());
+        assertEquals("Renamed", name());
+    }
+
+    @Test
+    public void update_ofAMissingBook_fails() {
+        Result result = new Result();
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, "Renamed");
+        writeQueue.update(ContentUris.withAppendedId(DataEntry.CONTENT_URI, 999), values, 10, 12, result);
+
+        assertEquals(BookWriteQueue.RESULT_FAILED, result.await());
+    }
+
+    private void adjustStock(int delta) {
+        contentResolver.call(DataEntry.CONTENT_URI, DataEntry.METHOD_ADJUST_STOCK, null,
+                DataEntry.buildAdjustStockExtras(new long[]{ContentUris.parseId(bookUri)}, new int[]{delta}));
+    }
+
+    private int quantity() {
+        Cursor cursor = contentResolver.query(bookUri, new String[]{DataEntry.COLUMN_DATA_QUANTITY}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private String name() {
+        Cursor cursor = contentResolver.query(bookUri, new String[]{DataEntry.COLUMN_DATA_NAME}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //Result posted to the main thread, which the test thread runs while it waits
+    private static class Result implements BookWriteQueue.Callback {
+        private Integer result;
+
+        @Override
+        public void onWriteFinished(Uri uri, int result) {
+            this.result = result;
+        }
+
+        int await() {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (result == null) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("The write did not finish");
+                }
+                Robolectric.flushForegroundThreadScheduler();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return result;
+        }
+    }
+}
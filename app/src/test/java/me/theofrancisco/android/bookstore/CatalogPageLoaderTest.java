@@ -0,0 +1,70 @@
+package me.theofrancisco.android.bookstore;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Which cursors the loader closes itself. The loads are not run, the background scheduler
+ * is paused and the results are delivered by the tests.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CatalogPageLoaderTest {
+
+    private static final String[] COLUMNS = {DataEntry._ID, DataEntry.COLUMN_DATA_NAME};
+
+    private CatalogPageLoader loader;
+
+    @Before
+    public void setUp() {
+        Robolectric.getBackgroundThreadScheduler().pause();
+        loader = new CatalogPageLoader(RuntimeEnvironment.application, COLUMNS);
+        loader.startLoading();
+    }
+
+    @Test
+    public void resultWhileStopped_closesTheUndeliveredOne() {
+        loader.stopLoading();
+        Cursor first = new MatrixCursor(COLUMNS);
+        Cursor second = new MatrixCursor(COLUMNS);
+
+        loader.deliverResult(first);
+        loader.deliverResult(second);
+
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+    }
+
+    @Test
+    public void deliveredResult_isLeftToTheAdapter() {
+        Cursor shown = new MatrixCursor(COLUMNS);
+        loader.deliverResult(shown);
+        loader.stopLoading();
+
+        loader.deliverResult(new MatrixCursor(COLUMNS));
+
+        assertFalse(shown.isClosed());
+    }
+
+    @Test
+    public void restart_redeliversTheSameCursor() {
+        loader.stopLoading();
+        Cursor loaded = new MatrixCursor(COLUMNS);
+        loader.deliverResult(loaded);
+
+        loader.startLoading();
+
+        assertFalse(loaded.isClosed());
+    }
+}
@@ -0,0 +1,141 @@
+package me.theofrancisco.android.bookstore;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.StrictMode;
+import android.widget.EditText;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.MyProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * The saves of EditorActivity must not write on the main thread. The main thread gets a
+ * StrictMode policy that kills the test on the slow call noted by every provider write.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EditorActivityStrictModeTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ContentResolver contentResolver;
+    private StrictMode.ThreadPolicy oldPolicy;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        oldPolicy = StrictMode.getThreadPolicy();
+    }
+
+    @After
+    public void tearDown() {
+        StrictMode.setThreadPolicy(oldPolicy);
+    }
+
+    @Test
+    public void writeOnTheMainThread_isAViolation() {
+        penaltyDeathOnSlowCalls();
+        try {
+            contentResolver.insert(DataEntry.CONTENT_URI, book("Strict Book", 10));
+            fail("The insert was not reported");
+        } catch (RuntimeException expected) {
+            //StrictModeViolation
+        }
+    }
+
+    @Test
+    public void saveNewBook_writesOffTheMainThread() {
+        EditorActivity activity = Robolectric.setupActivity(EditorActivity.class);
+        fillIn(activity, "Strict Book", "12");
+        penaltyDeathOnSlowCalls();
+
+        shadowOf(activity).clickMenuItem(R.id.action_save);
+
+        assertTrue(activity.isFinishing());
+        assertEquals(12, awaitSavedQuantity("Strict Book", -1));
+    }
+
+    @Test
+    public void saveExistingBook_writesOffTheMainThread() {
+        Uri bookUri = contentResolver.insert(DataEntry.CONTENT_URI, book("Strict Book", 10));
+        EditorActivity activity = Robolectric.buildActivity(EditorActivity.class,
+                new Intent(Intent.ACTION_EDIT, bookUri)).setup().get();
+        //Let the editor loader show the book, the save adds the change to the loaded quantity
+        Robolectric.flushBackgroundThreadScheduler();
+        Robolectric.flushForegroundThreadScheduler();
+        fillIn(activity, "Strict Book", "15");
+        penaltyDeathOnSlowCalls();
+
+        shadowOf(activity).clickMenuItem(R.id.action_save);
+
+        assertTrue(activity.isFinishing());
+        assertEquals(15, awaitSavedQuantity("Strict Book", 10));
+    }
+
+    //The values fillIn() types, so the save only changes the quantity
+    private static ContentValues book(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, name);
+        values.put(DataEntry.COLUMN_DATA_PRICE, 9.99);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, quantity);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Supplier 1");
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0101");
+        return values;
+    }
+
+    private static void penaltyDeathOnSlowCalls() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectCustomSlowCalls()
+                .penaltyDeath()
+                .build());
+    }
+
+    private static void fillIn(EditorActivity activity, String name, String quantity) {
+        ((EditText) activity.findViewById(R.id.edit_name)).setText(name);
+        ((EditText) activity.findViewById(R.id.edit_price)).setText("9.99");
+        ((EditText) activity.findViewById(R.id.edit_quantity)).setText(quantity);
+        ((EditText) activity.findViewById(R.id.edit_supplier)).setText("Supplier 1");
+        ((EditText) activity.findViewById(R.id.edit_supplier_ph)).setText("555-0101");
+    }
+
+    //Waits until the BookWriteQueue thread has written a quantity other than oldQuantity
+    //for the book, reads are not slow calls
+    private int awaitSavedQuantity(String name, int oldQuantity) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            Robolectric.flushForegroundThreadScheduler();
+            Cursor cursor = contentResolver.query(DataEntry.CONTENT_URI,
+                    new String[]{DataEntry.COLUMN_DATA_QUANTITY}, DataEntry.COLUMN_DATA_NAME + " = ?",
+                    new String[]{name}, null);
+            try {
+                if (cursor.moveToFirst() && cursor.getInt(0) != oldQuantity) {
+                    return cursor.getInt(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        throw new AssertionError("The save of " + name + " was not written");
+    }
+}
@@ -0,0 +1,73 @@
+package me.theofrancisco.android.bookstore;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class PagedCursorTest {
+
+    private static final String[] COLUMNS = {"_id", "name"};
+
+    @Test
+    public void copyStringToBufferReadsThePageOfThePosition() {
+        Page first = page(0, 3);
+        Page second = page(3, 3);
+        Page last = page(6, 1);
+        PagedCursor cursor = new PagedCursor(new Cursor[]{first, second, last});
+        CharArrayBuffer buffer = new CharArrayBuffer(16);
+
+        assertEquals(7, cursor.getCount());
+        for (int position : new int[]{5, 0, 6, 3, 2}) {
+            cursor.moveToPosition(position);
+            cursor.copyStringToBuffer(1, buffer);
+            assertEquals("Book " + position, new String(buffer.data, 0, buffer.sizeCopied));
+        }
+        assertEquals(2, first.copies);
+        assertEquals(2, second.copies);
+        assertEquals(1, last.copies);
+    }
+
+    @Test
+    public void emptyLastPageIsSkipped() {
+        Page first = page(0, 2);
+        Page empty = page(2, 0);
+        PagedCursor cursor = new PagedCursor(new Cursor[]{first, empty});
+        CharArrayBuffer buffer = new CharArrayBuffer(16);
+
+        cursor.moveToLast();
+        cursor.copyStringToBuffer(1, buffer);
+
+        assertEquals("Book 1", new String(buffer.data, 0, buffer.sizeCopied));
+        assertEquals(0, empty.copies);
+    }
+
+    private static Page page(int first, int count) {
+        Page page = new Page();
+        for (int i = first; i < first + count; i++) {
+            page.addRow(new Object[]{i, "Book " + i});
+        }
+        return page;
+    }
+
+    //Counts the copies it is asked for
+    private static class Page extends MatrixCursor {
+        int copies;
+
+        Page() {
+            super(COLUMNS);
+        }
+
+        @Override
+        public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+            copies++;
+            super.copyStringToBuffer(columnIndex, buffer);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class AdjustStockTest {
+
+    private ContentResolver contentResolver;
+    private long bookId;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, "Stock Book");
+        values.put(DataEntry.COLUMN_DATA_PRICE, 10.0);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, 10);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Stock Supplier");
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0110");
+        bookId = ContentUris.parseId(contentResolver.insert(DataEntry.CONTENT_URI, values));
+    }
+
+    @Test
+    public void delta_isAddedToTheCurrentQuantity() {
+        assertArrayEquals(new boolean[]{true, true}, adjust(DataEntry.buildAdjustStockExtras(
+                new long[]{bookId, bookId}, new int[]{-3, 5})));
+        assertEquals(12, quantity());
+    }
+
+    @Test
+    public void delta_belowZero_isRefused() {
+        assertArrayEquals(new boolean[]{false}, adjust(DataEntry.buildAdjustStockExtras(
+                new long[]{bookId}, new int[]{-11})));
+        assertEquals(10, quantity());
+    }
+
+    @Test
+    public void expectedQuantity_appliesWhileItMatches() {
+        assertArrayEquals(new boolean[]{true}, adjust(DataEntry.buildAdjustStockExtras(
+                new long[]{bookId}, new int[]{2}, new int[]{10})));
+        assertEquals(12, quantity());
+    }
+
+    @Test
+    public void expectedQuantity_refusesAChangedBook() {
+        adjust(DataEntry.buildAdjustStockExtras(new long[]{bookId}, new int[]{-1}));
+
+        assertArrayEquals(new boolean[]{false}, adjust(DataEntry.buildAdjustStockExtras(
+                new long[]{bookId}, new int[]{2}, new int[]{10})));
+        assertEquals(9, quantity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expectedQuantities_mustMatchTheIds() {
+        adjust(DataEntry.buildAdjustStockExtras(new long[]{bookId}, new int[]{2}, new int[]{10, 11}));
+    }
+
+    private boolean[] adjust(Bundle extras) {
+        return contentResolver.call(DataEntry.CONTENT_URI, DataEntry.METHOD_ADJUST_STOCK, null, extras)
+                .getBooleanArray(DataEntry.EXTRA_ADJUSTED);
+    }
+
+    private int quantity() {
+        Uri uri = ContentUris.withAppendedId(DataEntry.CONTENT_URI, bookId);
+        Cursor cursor = contentResolver.query(uri, new String[]{DataEntry.COLUMN_DATA_QUANTITY}, null, null, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
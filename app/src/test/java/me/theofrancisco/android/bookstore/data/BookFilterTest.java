@@ -0,0 +1,135 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry.BookFilter;
+import me.theofrancisco.android.bookstore.data.DataContract.SupplierEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The books sit on the edges of the filters: prices at and just past the ends of the range,
+ * and out of stock books inside it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BookFilterTest {
+
+    private static final int BOOK_COUNT = 8;
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        insert("A at min", "Supplier A", 5.0, 3);
+        insert("A at min, out of stock", "Supplier A", 5.0, 0);
+        insert("A at max", "Supplier A", 20.0, 30);
+        insert("A over max", "Supplier A", 20.01, 2);
+        insert("A under min", "Supplier A", 4.99, 10);
+        insert("B inside", "Supplier B", 12.0, 1);
+        insert("B inside, out of stock", "Supplier B", 12.0, 0);
+        insert("B over max", "Supplier B", 25.0, 40);
+    }
+
+    @Test
+    public void query_returnsTheFilteredRows() {
+        assertEquals(5, count(new BookFilter().supplier(supplierId("Supplier A")).buildUri()));
+        //"A at min", "A at max" and "B inside"
+        assertEquals(3, count(new BookFilter().priceRange(5, 20).inStock().buildUri()));
+    }
+
+    @Test
+    public void delete_onlyDeletesTheFilteredBooks() {
+        long supplierId = supplierId("Supplier A");
+
+        int deleted = contentResolver.delete(new BookFilter().supplier(supplierId).buildUri(), null, null);
+
+        assertEquals(5, deleted);
+        assertEquals(0, count(new BookFilter().supplier(supplierId).buildUri()));
+        assertEquals(BOOK_COUNT - 5, count(DataEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void delete_combinesTheFilterWithTheSelection() {
+        String selection = DataEntry.COLUMN_DATA_QUANTITY + " < ?";
+        String[] selectionArgs = {"25"};
+
+        int deleted = contentResolver.delete(new BookFilter().supplier(supplierId("Supplier A")).buildUri(),
+                selection, selectionArgs);
+
+        //Every book of supplier A but "A at max"
+        assertEquals(4, deleted);
+        assertEquals(BOOK_COUNT - 4, count(DataEntry.CONTENT_URI));
+        assertEquals(1, count(DataEntry.COLUMN_DATA_NAME + " = 'A at max'"));
+    }
+
+    @Test
+    public void update_onlyUpdatesTheFilteredBooks() {
+        Uri uri = new BookFilter().priceRange(5, 20).inStock().buildUri();
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, 99);
+
+        int updated = contentResolver.update(uri, values, null, null);
+
+        assertEquals(3, updated);
+        assertEquals(3, count(DataEntry.COLUMN_DATA_QUANTITY + " = 99"));
+        assertEquals(2, count(DataEntry.COLUMN_DATA_QUANTITY + " = 0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void delete_rejectsAPageUri() {
+        contentResolver.delete(DataEntry.buildPageUri(null, 0, 50), null, null);
+    }
+
+    private void insert(String name, String supplier, double price, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, name);
+        values.put(DataEntry.COLUMN_DATA_PRICE, price);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, quantity);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, supplier);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0150");
+        contentResolver.insert(DataEntry.CONTENT_URI, values);
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = contentResolver.query(uri, new String[]{DataEntry._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int count(String selection) {
+        Cursor cursor = contentResolver.query(DataEntry.CONTENT_URI, new String[]{DataEntry._ID},
+                selection, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long supplierId(String name) {
+        Cursor cursor = contentResolver.query(SupplierEntry.CONTENT_URI, new String[]{SupplierEntry._ID},
+                SupplierEntry.COLUMN_NAME + " = ?", new String[]{name}, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * Rows per second written by the three ways of inserting books: one insert() per row, one
+ * applyBatch() of insert operations, and bulkInsert(), which runs one transaction with a
+ * precompiled statement. The batched ways are measured at several batch sizes. Every
+ * iteration writes {@link #ROWS} books, so the "throughput" secondary metric is in rows/s.
+ * <p>
+ * Run with ./gradlew :app:testDebugUnitTest -Pbenchmark, the results are written to
+ * app/build/benchmark-results/BulkInsertBenchmark.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BulkInsertBenchmark {
+
+    //Rows written by every iteration
+    private static final int ROWS = 1000;
+
+    private static final BenchmarkReport report =
+            new BenchmarkReport(BulkInsertBenchmark.class, BenchmarkReport.jvmOutputDir());
+
+    private ContentResolver contentResolver;
+    private int nextBook;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void insertPerRow() throws Exception {
+        report.run("insertPerRow", new BenchmarkReport.Iteration() {
+            @Override
+            public long run() {
+                for (ContentValues values : TestBooks.books(nextBook, ROWS)) {
+                    contentResolver.insert(DataEntry.CONTENT_URI, values);
+                }
+                nextBook += ROWS;
+                return ROWS;
+            }
+        });
+    }
+
+    @Test
+    public void applyBatch10() throws Exception {
+        applyBatch(10);
+    }
+
+    @Test
+    public void applyBatch100() throws Exception {
+        applyBatch(100);
+    }
+
+    @Test
+    public void applyBatch1000() throws Exception {
+        applyBatch(1000);
+    }
+
+    @Test
+    public void bulkInsert10() throws Exception {
+        bulkInsert(10);
+    }
+
+    @Test
+    public void bulkInsert100() throws Exception {
+        bulkInsert(100);
+    }
+
+    @Test
+    public void bulkInsert1000() throws Exception {
+        bulkInsert(1000);
+    }
+
+    private void applyBatch(final int batchRows) throws Exception {
+        report.run("applyBatch" + batchRows, new BenchmarkReport.Iteration() {
+            @Override
+            public long run() throws Exception {
+                for (int first = 0; first < ROWS; first += batchRows) {
+                    ArrayList<ContentProviderOperation> operations = new ArrayList<>(batchRows);
+                    for (ContentValues values : TestBooks.books(nextBook + first, batchRows)) {
+                        operations.add(ContentProviderOperation.newInsert(DataEntry.CONTENT_URI)
+                                .withValues(values)
+                                .build());
+                    }
+                    contentResolver.applyBatch(DataEntry.CONTENT_URI.getAuthority(), operations);
+                }
+                nextBook += ROWS;
+                return ROWS;
+            }
+        });
+    }
+
+    private void bulkInsert(final int batchRows) throws Exception {
+        report.run("bulkInsert" + batchRows, new BenchmarkReport.Iteration() {
+            @Override
+            public long run() {
+                for (int first = 0; first < ROWS; first += batchRows) {
+                    contentResolver.bulkInsert(DataEntry.CONTENT_URI, TestBooks.books(nextBook + first, batchRows));
+                }
+                nextBook += ROWS;
+                return ROWS;
+            }
+        });
+    }
+}
@@ -0,0 +1,155 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the reloads the catalog list would do during bursts of updates. The observer is
+ * registered like the one of the loader cursors, on the books URI with its descendants.
+ * The notifier runs on the main looper, so the tests move its clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ChangeNotificationTest {
+
+    private static final int BOOKS = 1000;
+    private static final long DEBOUNCE_MILLIS = 100;
+    private static final long MAX_WAIT_MILLIS = 1000;
+
+    private ContentResolver contentResolver;
+    private CountingObserver catalog;
+
+    @Before
+    public void setUp() {
+        MyProvider provider = Robolectric.setupContentProvider(MyProvider.class,
+                DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        provider.changeNotifier.shutdown();
+        provider.changeNotifier = new ChangeNotifier(contentResolver, DEBOUNCE_MILLIS, MAX_WAIT_MILLIS,
+                new Handler(Looper.getMainLooper()));
+
+        ContentValues[] books = new ContentValues[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            books[i] = new ContentValues();
+            books[i].put(DataEntry.COLUMN_DATA_NAME, "Book " + i);
+            books[i].put(DataEntry.COLUMN_DATA_PRICE, 5.0);
+            books[i].put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+            books[i].put(DataEntry.COLUMN_DATA_SUPPLIER, "Supplier");
+            books[i].put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0100");
+        }
+        contentResolver.bulkInsert(DataEntry.CONTENT_URI, books);
+        //The notification of the insert is not counted
+        advance(MAX_WAIT_MILLIS);
+        catalog = new CountingObserver();
+        contentResolver.registerContentObserver(DataEntry.CONTENT_URI, true, catalog);
+    }
+
+    @Test
+    public void burstOfUpdates_reloadsOnce() {
+        for (long id = 1; id <= BOOKS; id++) {
+            setQuantity(id, 7);
+        }
+        advance(DEBOUNCE_MILLIS - 1);
+        assertEquals(0, catalog.count);
+
+        advance(1);
+        assertEquals(1, catalog.count);
+        assertEquals(DataEntry.CONTENT_URI, catalog.lastUri);
+    }
+
+    @Test
+    public void changeInsideTheWindow_extendsIt() {
+        for (long id = 1; id <= 8; id++) {
+            setQuantity(id, 7);
+            advance(DEBOUNCE_MILLIS - 10);
+        }
+        assertEquals(0, catalog.count);
+
+        advance(10);
+        assertEquals(1, catalog.count);
+    }
+
+    @Test
+    public void endlessBurst_isNotifiedAfterMaxWait() {
+        //One update every 50 ms for 1.5 s
+        for (long id = 1; id <= 30; id++) {
+            setQuantity(id, 7);
+            advance(50);
+            if (id * 50 == MAX_WAIT_MILLIS) {
+                assertEquals(1, catalog.count);
+            }
+        }
+        advance(DEBOUNCE_MILLIS);
+        assertEquals(2, catalog.count);
+    }
+
+    @Test
+    public void singleRowUpdate_isNotifiedOnItsRow() {
+        CountingObserver editor = new CountingObserver();
+        Uri watched = ContentUris.withAppendedId(DataEntry.CONTENT_URI, BOOKS);
+        contentResolver.registerContentObserver(watched, false, editor);
+
+        setQuantity(1, 7);
+        advance(DEBOUNCE_MILLIS);
+
+        assertEquals(0, editor.count);
+        assertEquals(1, catalog.count);
+        assertEquals(ContentUris.withAppendedId(DataEntry.CONTENT_URI, 1), catalog.lastUri);
+    }
+
+    @Test
+    public void shutdown_sendsThePendingNotifications() {
+        setQuantity(1, 7);
+        setQuantity(2, 7);
+
+        contentResolver.acquireContentProviderClient(DataEntry.CONTENT_URI).getLocalContentProvider().shutdown();
+
+        assertEquals(1, catalog.count);
+        setQuantity(3, 7);
+        assertEquals(2, catalog.count);
+    }
+
+    private void setQuantity(long id, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, quantity);
+        assertEquals(1, contentResolver.update(ContentUris.withAppendedId(DataEntry.CONTENT_URI, id),
+                values, null, null));
+    }
+
+    private static void advance(long millis) {
+        Robolectric.getForegroundThreadScheduler().advanceBy(millis, TimeUnit.MILLISECONDS);
+    }
+
+    //Called on the notifying thread, like the ForceLoadContentObserver of the loader
+    private static class CountingObserver extends ContentObserver {
+        int count;
+        Uri lastUri;
+
+        CountingObserver() {
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            count++;
+            lastUri = uri;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Records per second imported by {@link CsvImporter}, from parsing the file to the committed
+ * chunks. importNewBooks imports a file of books that are not in the table yet, reimport
+ * imports the same file again, so every record updates the book with its ISBN.
+ * <p>
+ * Run with ./gradlew :app:testDebugUnitTest -Pbenchmark, the results are written to
+ * app/build/benchmark-results/CsvImportBenchmark.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CsvImportBenchmark {
+
+    //Records of every imported file, ten chunks
+    private static final int RECORDS = 10 * CsvImporter.CHUNK_SIZE;
+
+    private static final BenchmarkReport report =
+            new BenchmarkReport(CsvImportBenchmark.class, BenchmarkReport.jvmOutputDir());
+
+    private ContentResolver contentResolver;
+    private int nextFile;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void importNewBooks() throws Exception {
+        report.run("importNewBooks", new ImportFile() {
+            @Override
+            int firstBook() {
+                //Every file has books of its own
+                return nextFile * RECORDS;
+            }
+        });
+    }
+
+    @Test
+    public void reimport() throws Exception {
+        report.run("reimport", new ImportFile() {
+            @Override
+            int firstBook() {
+                //The same books every time, the warmup imports them first
+                return 0;
+            }
+        });
+    }
+
+    private abstract class ImportFile extends BenchmarkReport.Iteration {
+        private Uri source;
+
+        abstract int firstBook();
+
+        @Override
+        public void setUp() {
+            //A new source every time, so the import does not resume a finished one
+            source = Uri.parse("file:///benchmark/books-" + nextFile + ".csv");
+            shadowOf(contentResolver).registerInputStream(source, new ByteArrayInputStream(csv(firstBook())));
+            nextFile++;
+        }
+
+        @Override
+        public long run() throws Exception {
+            assertEquals(RECORDS, new CsvImporter(contentResolver).importCsv(source, null));
+            return RECORDS;
+        }
+    }
+
+    private static byte[] csv(int firstBook) {
+        StringBuilder csv = new StringBuilder("name,quantity,buy_price,supplier,supplier_ph,isbn\n");
+        for (int i = firstBook; i < firstBook + RECORDS; i++) {
+            ContentValues book = TestBooks.book(i);
+            csv.append('"').append(book.getAsString(DataEntry.COLUMN_DATA_NAME)).append("\",")
+                    .append(book.getAsInteger(DataEntry.COLUMN_DATA_QUANTITY)).append(',')
+                    .append(book.getAsDouble(DataEntry.COLUMN_DATA_PRICE)).append(',')
+                    .append(book.getAsString(DataEntry.COLUMN_DATA_SUPPLIER)).append(',')
+                    .append(book.getAsString(DataEntry.COLUMN_DATA_SUPPLIER_PH)).append(',')
+                    .append(String.format(Locale.US, "978%010d", i)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,140 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * How long a delete of every book keeps the write lock. A second thread inserts one book
+ * after the other through the provider while the delete runs, and for a while after it so
+ * the free page reclaim is included; the time every insert waited for the lock is recorded.
+ * The provider delete, in chunks with the reclaim on the MyDbHelper thread, is compared with
+ * the same delete inside one batch transaction, which holds the lock until the last row is
+ * gone, like a single DELETE statement.
+ * <p>
+ * Run with ./gradlew :app:testDebugUnitTest -Pbenchmark, the results are written to
+ * app/build/benchmark-results/DeleteAllBenchmark.json. The secondary metrics
+ * "writer max wait ms" and "writer p99 wait ms" are the ones to compare.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DeleteAllBenchmark {
+
+    //Rows in the table when the delete starts
+    private static final int TABLE_ROWS = 20000;
+    //The writer keeps going this long after the delete returned, while the pages are reclaimed
+    private static final long TAIL_MILLIS = 200;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+
+    private static final BenchmarkReport report =
+            new BenchmarkReport(DeleteAllBenchmark.class, BenchmarkReport.jvmOutputDir());
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void providerDeleteAll() throws Exception {
+        report.run("providerDeleteAll", WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, new DeleteIteration() {
+            @Override
+            void deleteAll() {
+                contentResolver.delete(DataEntry.CONTENT_URI, null, null);
+            }
+        });
+    }
+
+    @Test
+    public void oneTransactionDeleteAll() throws Exception {
+        //The same delete as one operation of a batch: the chunks all run in the batch
+        //transaction, so the lock is only released after the last row
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(DataEntry.CONTENT_URI).build());
+        report.run("oneTransactionDeleteAll", WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, new DeleteIteration() {
+            @Override
+            void deleteAll() throws Exception {
+                contentResolver.applyBatch(DataEntry.CONTENT_URI.getAuthority(), operations);
+            }
+        });
+    }
+
+    private abstract class DeleteIteration extends BenchmarkReport.Iteration {
+
+        abstract void deleteAll() throws Exception;
+
+        @Override
+        public void setUp() {
+            contentResolver.bulkInsert(DataEntry.CONTENT_URI, TestBooks.books(0, TABLE_ROWS));
+        }
+
+        @Override
+        public long run() throws Exception {
+            Writer writer = new Writer();
+            writer.start();
+            writer.awaitFirstInsert();
+            deleteAll();
+            Thread.sleep(TAIL_MILLIS);
+            List<Long> waits = writer.finish();
+            Collections.sort(waits);
+            record("writer max wait ms", waits.get(waits.size() - 1) / 1e6);
+            record("writer p99 wait ms", waits.get((int) (waits.size() * 0.99)) / 1e6);
+            record("writer inserts", waits.size());
+            return 1;
+        }
+    }
+
+    //Inserts one book at a time until finish(), keeping how long every insert took
+    private class Writer extends Thread {
+        private final List<Long> waits = new ArrayList<>();
+        private volatile boolean stopped;
+
+        @Override
+        public void run() {
+            for (int i = TABLE_ROWS; !stopped; i++) {
+                long start = System.nanoTime();
+                contentResolver.insert(DataEntry.CONTENT_URI, TestBooks.book(i));
+                long elapsed = System.nanoTime() - start;
+                synchronized (waits) {
+                    waits.add(elapsed);
+                    waits.notifyAll();
+                }
+            }
+        }
+
+        void awaitFirstInsert() throws InterruptedException {
+            synchronized (waits) {
+                while (waits.isEmpty()) {
+                    waits.wait();
+                }
+            }
+        }
+
+        List<Long> finish() throws InterruptedException {
+            stopped = true;
+            join();
+            return waits;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The free pages left by deletes are given back on the thread of {@link MyDbHelper}. The
+ * counts are read on a connection of their own, the one of the helper is not touched.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FreePageReclaimTest {
+
+    //File of the provider
+    private static final String DATABASE_NAME = "bstore.db";
+    private static final int BOOKS = 2000;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void deleteWithSelection_reclaimsTheFreedPages() throws Exception {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        ContentResolver contentResolver = context.getContentResolver();
+        ContentValues[] books = new ContentValues[BOOKS];
+        char[] padding = new char[200];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < BOOKS; i++) {
+            books[i] = new ContentValues();
+            books[i].put(DataEntry.COLUMN_DATA_NAME, "Reclaimed " + i + " " + new String(padding));
+            books[i].put(DataEntry.COLUMN_DATA_PRICE, 5.0);
+            books[i].put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+            books[i].put(DataEntry.COLUMN_DATA_SUPPLIER, "Reclaim Supplier");
+            books[i].put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0120");
+        }
+        contentResolver.bulkInsert(DataEntry.CONTENT_URI, books);
+        long pagesBefore = pragma(DATABASE_NAME, "page_count");
+
+        //Every book but the first one, the selection is not null
+        assertEquals(BOOKS - 1, contentResolver.delete(DataEntry.CONTENT_URI,
+                DataEntry._ID + " > ?", new String[]{"1"}));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (pragma(DATABASE_NAME, "freelist_count") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, pragma(DATABASE_NAME, "freelist_count"));
+        assertTrue(pragma(DATABASE_NAME, "page_count") < pagesBefore);
+    }
+
+    @Test
+    public void closedHelper_doesNotReopenTheDatabase() throws Exception {
+        String name = "reclaim-test.db";
+        MyDbHelper helper = new MyDbHelper(context, name, MyDbHelper.CHECKPOINT_AUTOMATIC);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("CREATE TABLE scratch (data BLOB)");
+        for (int i = 0; i < 1000; i++) {
+            db.execSQL("INSERT INTO scratch VALUES (zeroblob(1000))");
+        }
+        db.execSQL("DELETE FROM scratch");
+        long freePages = pragma(name, "freelist_count");
+        assertTrue(freePages > 0);
+
+        helper.close();
+        helper.reclaimFreePagesLater();
+        Thread.sleep(200);
+
+        assertEquals(freePages, pragma(name, "freelist_count"));
+    }
+
+    private long pragma(String databaseName, String pragma) {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(databaseName).getPath(),
+                null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            return DatabaseUtils.longForQuery(db, "PRAGMA " + pragma, null);
+        } finally {
+            db.close();
+        }
+    }
+}
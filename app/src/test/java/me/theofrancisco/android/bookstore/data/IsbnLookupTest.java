@@ -0,0 +1,67 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class IsbnLookupTest {
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, "The Catcher in the Rye");
+        values.put(DataEntry.COLUMN_DATA_PRICE, 8.99);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, 3);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Little, Brown");
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0142");
+        values.put(DataEntry.COLUMN_DATA_ISBN, "0316769487");
+        contentResolver.insert(DataEntry.CONTENT_URI, values);
+    }
+
+    @Test
+    public void buildIsbnUri_findsTheBookHoweverTheIsbnIsTyped() {
+        Cursor cursor = contentResolver.query(DataEntry.buildIsbnUri("0-316-76948-7"),
+                new String[]{DataEntry.COLUMN_DATA_NAME}, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("The Catcher in the Rye", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildIsbnUri_rejectsTextWithoutDigits() {
+        DataEntry.buildIsbnUri("not an isbn");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildIsbnUri_rejectsNull() {
+        DataEntry.buildIsbnUri(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_rejectsAnIsbnSegmentWithoutDigits() {
+        Uri uri = DataEntry.CONTENT_URI.buildUpon().appendPath("isbn").appendPath("none").build();
+        contentResolver.query(uri, null, null, null, null);
+    }
+}
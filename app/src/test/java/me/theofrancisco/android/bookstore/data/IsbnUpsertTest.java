@@ -0,0 +1,105 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A bulk insert row with the ISBN of a book updates that book with the columns the row has.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IsbnUpsertTest {
+
+    private static final String ISBN = "9780306406157";
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        ContentValues book = row("Signals and Systems", ISBN);
+        book.put(DataEntry.COLUMN_DATA_QUANTITY, 12);
+        book.put(DataEntry.COLUMN_DATA_PRICE, 45.5);
+        contentResolver.bulkInsert(DataEntry.CONTENT_URI, new ContentValues[]{book});
+    }
+
+    @Test
+    public void reimportWithoutQuantity_keepsTheStock() {
+        ContentValues update = row("Signals and Systems, 2nd edition", ISBN);
+        update.put(DataEntry.COLUMN_DATA_PRICE, 49.0);
+
+        assertEquals(1, contentResolver.bulkInsert(DataEntry.CONTENT_URI, new ContentValues[]{update}));
+
+        assertBook("Signals and Systems, 2nd edition", 12, 49.0);
+    }
+
+    @Test
+    public void reimportWithoutPrice_keepsThePrice() {
+        ContentValues update = row("Signals and Systems", "978-0-306-40615-7");
+        update.put(DataEntry.COLUMN_DATA_QUANTITY, 4);
+
+        assertEquals(1, contentResolver.bulkInsert(DataEntry.CONTENT_URI, new ContentValues[]{update}));
+
+        assertBook("Signals and Systems", 4, 45.5);
+    }
+
+    @Test
+    public void reimportOfOnlyTheIsbn_leavesTheBook() {
+        ContentValues update = new ContentValues();
+        update.put(DataEntry.COLUMN_DATA_ISBN, ISBN);
+
+        assertEquals(1, contentResolver.bulkInsert(DataEntry.CONTENT_URI, new ContentValues[]{update}));
+
+        assertBook("Signals and Systems", 12, 45.5);
+    }
+
+    @Test
+    public void sameIsbnTwiceInOneInsert_isOneBook() {
+        ContentValues first = row("Signals and Systems", ISBN);
+        first.put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+        ContentValues second = row("Signals and Systems", ISBN);
+        second.put(DataEntry.COLUMN_DATA_PRICE, 30.0);
+
+        assertEquals(2, contentResolver.bulkInsert(DataEntry.CONTENT_URI, new ContentValues[]{first, second}));
+
+        assertBook("Signals and Systems", 1, 30.0);
+    }
+
+    //A row with a name, a supplier and an ISBN, without quantity or price
+    private static ContentValues row(String name, String isbn) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, name);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Signal Press");
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0177");
+        values.put(DataEntry.COLUMN_DATA_ISBN, isbn);
+        return values;
+    }
+
+    //The catalog has exactly one book, with these values
+    private void assertBook(String name, int quantity, double price) {
+        Cursor cursor = contentResolver.query(DataEntry.CONTENT_URI, new String[]{
+                DataEntry.COLUMN_DATA_NAME, DataEntry.COLUMN_DATA_QUANTITY, DataEntry.COLUMN_DATA_PRICE},
+                null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(name, cursor.getString(0));
+            assertEquals(quantity, cursor.getInt(1));
+            assertEquals(price, cursor.getDouble(2), 0.001);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The keyset pages must give every book once, in the order of the list. The names tie in
+ * NOCASE order across the page boundaries, and some only sort the same way in NOCASE order:
+ * '_' and '[' sort before 'Z' in binary order but after it once folded, and NOCASE leaves
+ * the case of non-ASCII letters like 'É' alone.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class KeysetPagingTest {
+
+    private static final int PAGE_SIZE = 7;
+    private static final String[] NAMES = {
+            "same name", "Same Name", "SAME NAME", "same name", "Same name", "same NAME", "Same Name",
+            "same name", "Zebra", "zebra", "_Underscore", "[Bracket", "Émile", "émile", "Emile",
+            "Zoë", "zoe", "Ångström", "Angstrom", "a", "A", "B",
+    };
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        for (String name : NAMES) {
+            ContentValues values = new ContentValues();
+            values.put(DataEntry.COLUMN_DATA_NAME, name);
+            values.put(DataEntry.COLUMN_DATA_PRICE, 10.0);
+            values.put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+            values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Paging Supplier");
+            values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0130");
+            contentResolver.insert(DataEntry.CONTENT_URI, values);
+        }
+    }
+
+    @Test
+    public void pages_returnEveryRowOnceInListOrder() {
+        List<Long> paged = new ArrayList<>();
+        String afterName = null;
+        long afterId = 0;
+        while (true) {
+            Cursor page = contentResolver.query(DataEntry.buildPageUri(afterName, afterId, PAGE_SIZE),
+                    DataEntry.LIST_SUMMARY_PROJECTION, null, null, null);
+            try {
+                if (!page.moveToLast()) {
+                    break;
+                }
+                afterName = page.getString(page.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME));
+                afterId = page.getLong(page.getColumnIndexOrThrow(DataEntry._ID));
+                for (page.moveToFirst(); !page.isAfterLast(); page.moveToNext()) {
+                    paged.add(page.getLong(0));
+                }
+            } finally {
+                page.close();
+            }
+        }
+
+        //The ids are 1 to NAMES.length in the order of NAMES
+        List<Long> expected = new ArrayList<>();
+        for (long id = 1; id <= NAMES.length; id++) {
+            expected.add(id);
+        }
+        Collections.sort(expected, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                int byName = noCase(NAMES[(int) (a - 1)]).compareTo(noCase(NAMES[(int) (b - 1)]));
+                return byName != 0 ? byName : a.compareTo(b);
+            }
+        });
+        assertEquals(expected, paged);
+    }
+
+    //The key NOCASE compares: A-Z folded to a-z, every other character as it is
+    private static String noCase(String name) {
+        StringBuilder folded = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            folded.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The name prefix of the page URIs ignores the case of ASCII letters only, like the NOCASE
+ * order of the list.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NamePrefixTest {
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        for (String name : new String[]{"Emile", "emma", "EMBER", "Émile", "émile", "Eliot",
+                "Zoë", "zoe", "Zz", "z{", "@home", "Apple", "[Bracket"}) {
+            ContentValues values = new ContentValues();
+            values.put(DataEntry.COLUMN_DATA_NAME, name);
+            values.put(DataEntry.COLUMN_DATA_PRICE, 10.0);
+            values.put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+            values.put(DataEntry.COLUMN_DATA_SUPPLIER, "Prefix Supplier");
+            values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0140");
+            contentResolver.insert(DataEntry.CONTENT_URI, values);
+        }
+    }
+
+    @Test
+    public void asciiPrefix_ignoresTheCase() {
+        assertEquals(Arrays.asList("EMBER", "Emile", "emma"), names("eM", 50));
+        assertEquals(Arrays.asList("zoe", "Zoë", "Zz", "z{"), names("Z", 50));
+    }
+
+    @Test
+    public void nonAsciiPrefix_keepsTheCase() {
+        assertEquals(Arrays.asList("Émile"), names("É", 50));
+        assertEquals(Arrays.asList("émile"), names("é", 50));
+        assertEquals(Arrays.asList("Zoë"), names("zoë", 50));
+    }
+
+    @Test
+    public void prefixBeforeTheLetters_doesNotReachThem() {
+        //The code point after '@' is 'A', which NOCASE reads as 'a'
+        assertEquals(Arrays.asList("@home"), names("@", 50));
+        assertEquals(Arrays.asList("[Bracket"), names("[", 50));
+    }
+
+    @Test
+    public void prefixPages_returnEveryMatchOnce() {
+        assertEquals(Arrays.asList("EMBER", "Emile", "emma"), names("em", 2));
+    }
+
+    //Names of the books starting with prefix, read pageSize rows at a time
+    private List<String> names(String prefix, int pageSize) {
+        List<String> names = new ArrayList<>();
+        String afterName = null;
+        long afterId = 0;
+        while (true) {
+            Cursor page = contentResolver.query(DataEntry.buildPageUri(prefix, afterName, afterId, pageSize),
+                    DataEntry.LIST_SUMMARY_PROJECTION, null, null, null);
+            try {
+                if (!page.moveToLast()) {
+                    return names;
+                }
+                afterName = page.getString(page.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME));
+                afterId = page.getLong(page.getColumnIndexOrThrow(DataEntry._ID));
+                for (page.moveToFirst(); !page.isAfterLast(); page.moveToNext()) {
+                    names.add(page.getString(page.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME)));
+                }
+            } finally {
+                page.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Random;
+
+import me.theofrancisco.android.bookstore.benchmark.BenchmarkReport;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+/**
+ * Benchmarks of the main {@link MyProvider} paths, through a ContentResolver like the app.
+ * Robolectric runs the provider and MyDbHelper on the JVM with a real SQLite, so a change
+ * that makes a path slower shows up here; the absolute numbers are not the ones of a phone.
+ * <p>
+ * Run with ./gradlew :app:testDebugUnitTest -Pbenchmark, the results are written to
+ * app/build/benchmark-results/ProviderBenchmark.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProviderBenchmark {
+
+    //Rows written by every iteration of the write benchmarks
+    private static final int BATCH_ROWS = 500;
+    //Rows of the table read by the query benchmarks
+    private static final int TABLE_ROWS = 5000;
+
+    private static final BenchmarkReport report =
+            new BenchmarkReport(ProviderBenchmark.class, BenchmarkReport.jvmOutputDir());
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void singleInsert() throws Exception {
+        report.run("singleInsert", new BenchmarkReport.Iteration() {
+            int next;
+
+            @Override
+            public long run() {
+                for (ContentValues values : TestBooks.books(next, BATCH_ROWS)) {
+                    contentResolver.insert(DataEntry.CONTENT_URI, values);
+                }
+                next += BATCH_ROWS;
+                return BATCH_ROWS;
+            }
+        });
+    }
+
+    @Test
+    public void bulkInsert() throws Exception {
+        report.run("bulkInsert", new BenchmarkReport.Iteration() {
+            int next;
+
+            @Override
+            public long run() {
+                contentResolver.bulkInsert(DataEntry.CONTENT_URI, TestBooks.books(next, BATCH_ROWS));
+                next += BATCH_ROWS;
+                return BATCH_ROWS;
+            }
+        });
+    }
+
+    @Test
+    public void bookIdLookup() throws Exception {
+        final long[] ids = fillTable();
+        final Random random = new Random(42);
+        report.run("bookIdLookup", new BenchmarkReport.Iteration() {
+            @Override
+            public long run() {
+                //Random rows, most of them are not in the row cache
+                for (int i = 0; i < BATCH_ROWS; i++) {
+                    Uri uri = ContentUris.withAppendedId(DataEntry.CONTENT_URI, ids[random.nextInt(ids.length)]);
+                    Cursor cursor = contentResolver.query(uri, null, null, null, null);
+                    try {
+                        cursor.moveToFirst();
+                        cursor.getString(cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME));
+                    } finally {
+                        cursor.close();
+                    }
+                }
+                return BATCH_ROWS;
+            }
+        });
+    }
+
+    @Test
+    public void fullListQuery() throws Exception {
+        fillTable();
+        report.run("fullListQuery", new BenchmarkReport.Iteration() {
+            @Override
+            public long run() {
+                Cursor cursor = contentResolver.query(DataEntry.CONTENT_URI, DataEntry.LIST_SUMMARY_PROJECTION,
+                        null, null, DataEntry.SORT_BY_NAME);
+                try {
+                    int nameColumnIndex = cursor.getColumnIndexOrThrow(DataEntry.COLUMN_DATA_NAME);
+                    int rows = 0;
+                    while (cursor.moveToNext()) {
+                        cursor.getString(nameColumnIndex);
+                        rows++;
+                    }
+                    record("rows/query", rows);
+                    return 1;
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void update() throws Exception {
+        final long[] ids = fillTable();
+        report.run("update", new BenchmarkReport.Iteration() {
+            int round;
+
+            @Override
+            public long run() {
+                ContentValues values = new ContentValues();
+                values.put(DataEntry.COLUMN_DATA_PRICE, 10 + round++);
+                for (int i = 0; i < BATCH_ROWS; i++) {
+                    contentResolver.update(ContentUris.withAppendedId(DataEntry.CONTENT_URI, ids[i]),
+                            values, null, null);
+                }
+                return BATCH_ROWS;
+            }
+        });
+    }
+
+    @Test
+    public void delete() throws Exception {
+        report.run("delete", new BenchmarkReport.Iteration() {
+            long[] ids;
+
+            @Override
+            public void setUp() {
+                ids = insertRows(BATCH_ROWS);
+            }
+
+            @Override
+            public long run() {
+                for (long id : ids) {
+                    contentResolver.delete(ContentUris.withAppendedId(DataEntry.CONTENT_URI, id), null, null);
+                }
+                return BATCH_ROWS;
+            }
+        });
+    }
+
+    private long[] fillTable() {
+        return insertRows(TABLE_ROWS);
+    }
+
+    //Bulk inserts count rows and returns their ids
+    private long[] insertRows(int count) {
+        Cursor before = contentResolver.query(DataEntry.CONTENT_URI, new String[]{"max(" + DataEntry._ID + ")"},
+                null, null, null);
+        long maxId;
+        try {
+            before.moveToFirst();
+            maxId = before.getLong(0);
+        } finally {
+            before.close();
+        }
+        contentResolver.bulkInsert(DataEntry.CONTENT_URI, TestBooks.books((int) maxId, count));
+        Cursor cursor = contentResolver.query(DataEntry.CONTENT_URI, new String[]{DataEntry._ID},
+                DataEntry._ID + " > ?", new String[]{String.valueOf(maxId)}, DataEntry._ID);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+}
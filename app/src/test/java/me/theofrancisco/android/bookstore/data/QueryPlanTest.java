@@ -0,0 +1,101 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry.BookFilter;
+
+import static me.theofrancisco.android.bookstore.data.QueryPlans.assertSearches;
+import static me.theofrancisco.android.bookstore.data.QueryPlans.assertSeeks;
+
+/**
+ * EXPLAIN QUERY PLAN checks of the index each statement built by {@link MyProvider.BooksQuery}
+ * searches, on the schema created by {@link MyDbHelper}. The SQLite 3.7 of Robolectric sorts
+ * every ORDER BY in a temporary tree, the sort orders are checked on a device by
+ * QueryPlanOrderTest.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanTest {
+
+    private MyDbHelper dbHelper;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        dbHelper = new MyDbHelper(RuntimeEnvironment.application);
+        database = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void namePrefix_searchesTheNocaseNameIndex() {
+        assertSeeks("books_name_quantity_idx (name>? AND name<?)",
+                planOf(DataEntry.buildPageUri("Har", null, 0, 50)));
+    }
+
+    @Test
+    public void supplierBooks_searchTheSupplierIndex() {
+        //The query of suppliers/#/books
+        assertSearches("books_supplier_price_idx (supplier_id=?)",
+                planOf("SELECT * FROM " + DataEntry.VIEW_NAME + " WHERE " + DataEntry.COLUMN_DATA_SUPPLIER_ID
+                        + " = 5", null));
+    }
+
+    @Test
+    public void stockSelections_searchTheQuantityIndex() {
+        assertSearches("books_quantity_idx (quantity>?)", planOf(new BookFilter().inStock().buildUri()));
+        //A low stock selection goes through the view, it names a column
+        MyProvider.BooksQuery lowStock = new MyProvider.BooksQuery(DataEntry.CONTENT_URI,
+                DataEntry.LIST_SUMMARY_PROJECTION, DataEntry.COLUMN_DATA_QUANTITY + " < ?", new String[]{"5"}, null);
+        assertSearches("books_quantity_idx (quantity<?)", planOf(lowStock.sql, lowStock.args));
+    }
+
+    @Test
+    public void filters_searchTheirIndex() {
+        assertSearches("books_supplier_price_idx (supplier_id=?)",
+                planOf(new BookFilter().supplier(3).buildUri()));
+        assertSearches("books_supplier_price_idx (supplier_id=? AND buy_price>? AND buy_price<?)",
+                planOf(new BookFilter().supplier(3).priceRange(5, 20).buildUri()));
+        assertSearches("books_supplier_price_idx (supplier_id=? AND buy_price>? AND buy_price<?)",
+                planOf(new BookFilter().supplier(3).priceRange(5, 20).inStock().buildUri()));
+        assertSearches("books_supplier_price_idx (supplier_id=?)",
+                planOf(new BookFilter().supplier(3).inStock().buildUri()));
+        assertSearches("books_price_quantity_idx (buy_price>? AND buy_price<?)",
+                planOf(new BookFilter().priceRange(5, 20).buildUri()));
+        assertSearches("books_price_quantity_idx (buy_price>? AND buy_price<?)",
+                planOf(new BookFilter().priceRange(5, 20).inStock().buildUri()));
+        assertSearches("books_price_quantity_idx (buy_price>?)",
+                planOf(new BookFilter().minPrice(5).buildUri()));
+        assertSearches("books_price_quantity_idx (buy_price<?)",
+                planOf(new BookFilter().maxPrice(20).buildUri()));
+        assertSearches("books_quantity_idx (quantity>?)",
+                planOf(new BookFilter().inStock().buildUri()));
+    }
+
+    @Test
+    public void nextPage_seeksTheNameIndex() {
+        assertSeeks("books_name_quantity_idx (name>?)", planOf(DataEntry.buildPageUri("Harry", 42, 50)));
+        assertSeeks("books_name_quantity_idx (name>? AND name<?)",
+                planOf(DataEntry.buildPageUri("Har", "Harry", 42, 50)));
+    }
+
+    private String planOf(Uri uri) {
+        return QueryPlans.planOf(database, uri);
+    }
+
+    private String planOf(String sql, String[] args) {
+        return QueryPlans.planOf(database, sql, args);
+    }
+}
@@ -0,0 +1,86 @@
+package me.theofrancisco.android.bookstore.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import me.theofrancisco.android.bookstore.data.DataContract.DataEntry;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchTest {
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(MyProvider.class, DataEntry.CONTENT_URI.getAuthority());
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        insert("C# Primer", "Tech Books");
+        insert("AC/DC: The Story", "Music House");
+        insert("Java Primer", "Tech Books");
+    }
+
+    @Test
+    public void buildSearchUri_keepsTheTextInOneSegment() {
+        assertEquals("AC/DC", DataEntry.buildSearchUri("AC/DC").getLastPathSegment());
+        assertEquals("C# primer", DataEntry.buildSearchUri("C# primer").getLastPathSegment());
+        assertEquals(DataEntry.CONTENT_SEARCH_URI.getPathSegments().size() + 1,
+                DataEntry.buildSearchUri("AC/DC").getPathSegments().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildSearchUri_rejectsEmptyText() {
+        DataEntry.buildSearchUri("");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildSearchUri_rejectsBlankText() {
+        DataEntry.buildSearchUri("  ");
+    }
+
+    @Test
+    public void search_findsTextWithReservedCharacters() {
+        assertEquals(Arrays.asList("C# Primer"), search("C# primer"));
+        assertEquals(Arrays.asList("AC/DC: The Story"), search("AC/DC"));
+        assertEquals(Arrays.asList("C# Primer", "Java Primer"), search("primer"));
+    }
+
+    private void insert(String name, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(DataEntry.COLUMN_DATA_NAME, name);
+        values.put(DataEntry.COLUMN_DATA_PRICE, 10);
+        values.put(DataEntry.COLUMN_DATA_QUANTITY, 1);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER, supplier);
+        values.put(DataEntry.COLUMN_DATA_SUPPLIER_PH, "555-0100");
+        contentResolver.insert(DataEntry.CONTENT_URI, values);
+    }
+
+    //Names found for text. The sort order is given because the default ranking uses instr(),
+    //which the SQLite of Robolectric is too old to have
+    private List<String> search(String text) {
+        Cursor cursor = contentResolver.query(DataEntry.buildSearchUri(text),
+                new String[]{DataEntry.COLUMN_DATA_NAME}, null, null, DataEntry.COLUMN_DATA_NAME);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}